@@ -0,0 +1,78 @@
+package org.jocean.opentracing.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * in-process JDBC stubs: every call returns immediately with a canned value,
+ * so the benchmarks only measure the cost of the tracing wrappers.
+ */
+final class StubJdbc {
+
+    private StubJdbc() {
+    }
+
+    private static final int[] BATCH_RESULT = new int[] { 1, 1, 1, 1 };
+
+    static final ResultSet RESULT_SET = proxy(ResultSet.class, new InvocationHandler() {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            return defaultValue(method.getReturnType());
+        }});
+
+    static final Statement STATEMENT = proxy(Statement.class, new StatementHandler());
+
+    static final PreparedStatement PREPARED_STATEMENT = proxy(PreparedStatement.class, new StatementHandler());
+
+    static final Connection CONNECTION = proxy(Connection.class, new InvocationHandler() {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            final Class<?> type = method.getReturnType();
+            if (type == Statement.class) {
+                return STATEMENT;
+            } else if (type == PreparedStatement.class) {
+                return PREPARED_STATEMENT;
+            }
+            return defaultValue(type);
+        }});
+
+    private static class StatementHandler implements InvocationHandler {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            final Class<?> type = method.getReturnType();
+            if (type == ResultSet.class) {
+                return RESULT_SET;
+            } else if (type == Connection.class) {
+                return CONNECTION;
+            } else if (type == int[].class) {
+                return BATCH_RESULT;
+            } else if (type == int.class) {
+                return 1;
+            }
+            return defaultValue(type);
+        }
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type.isPrimitive() && type != void.class) {
+            throw new UnsupportedOperationException("stub does not support " + type);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(final Class<T> iface, final InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StubJdbc.class.getClassLoader(), new Class<?>[] { iface }, handler);
+    }
+}
@@ -0,0 +1,141 @@
+package org.jocean.opentracing.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.jocean.opentracing.DurationRecorder;
+import org.jocean.opentracing.TracingUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.opentracing.Tracer;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.noop.NoopTracerFactory;
+
+/**
+ * per-call overhead of the tracing wrappers against an in-process stub driver.
+ * run with {@code -prof gc} (the default of the {@code jmh} gradle task) to get
+ * allocated bytes/op next to ns/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TracingStatementBenchmark {
+
+    private static final String QUERY = "SELECT id, name FROM users WHERE id = 42";
+    private static final String UPDATE = "UPDATE users SET name = ? WHERE id = ?";
+
+    /**
+     * none: no tracer passed, falls back to TracingUtil / GlobalTracer
+     * noop: NoopTracer
+     * mock: MockTracer which drops finished spans
+     */
+    @Param({ "none", "noop", "mock" })
+    public String tracerType;
+
+    @Param({ "false", "true" })
+    public boolean withRecorder;
+
+    private Statement rawStatement;
+    private PreparedStatement rawPreparedStatement;
+    private TracingStatement statement;
+    private TracingPreparedStatement preparedStatement;
+
+    private long recorded;
+
+    @Setup
+    public void setup() throws SQLException {
+        final Tracer tracer = buildTracer(tracerType);
+        // TracingUtil keeps the recorder in a ThreadLocal, Scope.Thread setup runs on the benchmark thread
+        TracingUtil.setDurationRecorder(withRecorder ? new DurationRecorder() {
+            @Override
+            public void record(final long amount, final TimeUnit unit, final String... tags) {
+                recorded += amount + tags.length;
+            }} : null);
+
+        rawStatement = StubJdbc.CONNECTION.createStatement();
+        rawPreparedStatement = StubJdbc.CONNECTION.prepareStatement(UPDATE);
+
+        final TracingConnection connection = new TracingConnection(StubJdbc.CONNECTION, "mysql", "bench", false,
+                Collections.<String>emptySet(), tracer);
+        statement = (TracingStatement)connection.createStatement();
+        preparedStatement = (TracingPreparedStatement)connection.prepareStatement(UPDATE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        TracingUtil.setDurationRecorder(null);
+    }
+
+    private static Tracer buildTracer(final String type) {
+        if ("noop".equals(type)) {
+            return NoopTracerFactory.create();
+        } else if ("mock".equals(type)) {
+            return new MockTracer() {
+                @Override
+                protected void onSpanFinished(final MockSpan mockSpan) {
+                    // don't let finished spans pile up across millions of invocations
+                    reset();
+                }
+            };
+        }
+        return null;
+    }
+
+    @Benchmark
+    public ResultSet rawExecuteQuery() throws SQLException {
+        return rawStatement.executeQuery(QUERY);
+    }
+
+    @Benchmark
+    public ResultSet executeQuery() throws SQLException {
+        return statement.executeQuery(QUERY);
+    }
+
+    @Benchmark
+    public int rawPreparedExecuteUpdate() throws SQLException {
+        rawPreparedStatement.setString(1, "name");
+        rawPreparedStatement.setLong(2, 42L);
+        return rawPreparedStatement.executeUpdate();
+    }
+
+    @Benchmark
+    public int preparedExecuteUpdate() throws SQLException {
+        preparedStatement.setString(1, "name");
+        preparedStatement.setLong(2, 42L);
+        return preparedStatement.executeUpdate();
+    }
+
+    // executeBatch clears the batch: each invocation adds its own rows
+    @Benchmark
+    public int[] rawExecuteBatch() throws SQLException {
+        rawStatement.addBatch(UPDATE);
+        rawStatement.addBatch(UPDATE);
+        return rawStatement.executeBatch();
+    }
+
+    @Benchmark
+    public int[] executeBatch() throws SQLException {
+        statement.addBatch(UPDATE);
+        statement.addBatch(UPDATE);
+        return statement.executeBatch();
+    }
+}
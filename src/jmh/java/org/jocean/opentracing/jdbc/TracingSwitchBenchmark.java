@@ -0,0 +1,105 @@
+package org.jocean.opentracing.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+
+/**
+ * wrappers with tracing switched off ({@link TracingDriver#setTracingEnabled(boolean)}) against the
+ * stub driver itself: every feature of the connection is on, the pairs raw* / disabled* should not
+ * differ in ns/op nor allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TracingSwitchBenchmark {
+
+    private static final String QUERY = "SELECT id, name FROM users WHERE id = 42";
+    private static final String UPDATE = "UPDATE users SET name = ? WHERE id = ?";
+
+    private Statement rawStatement;
+    private PreparedStatement rawPreparedStatement;
+    private Statement statement;
+    private PreparedStatement preparedStatement;
+
+    @Setup
+    public void setup() throws SQLException {
+        final MockTracer tracer = new MockTracer() {
+            @Override
+            protected void onSpanFinished(final MockSpan mockSpan) {
+                reset();
+            }
+        };
+        rawStatement = StubJdbc.CONNECTION.createStatement();
+        rawPreparedStatement = StubJdbc.CONNECTION.prepareStatement(UPDATE);
+
+        final TracingConnection connection = new TracingConnection(StubJdbc.CONNECTION, "mysql", "bench", false,
+                IgnoreMatcher._Nothing, tracer, null, null, true, false, true, true, 5,
+                new StatementStatistics("bench", null));
+        statement = connection.createStatement();
+        preparedStatement = connection.prepareStatement(UPDATE);
+
+        TracingDriver.setTracingEnabled(false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        TracingDriver.setTracingEnabled(true);
+    }
+
+    @Benchmark
+    public ResultSet rawExecuteQuery() throws SQLException {
+        return rawStatement.executeQuery(QUERY);
+    }
+
+    @Benchmark
+    public ResultSet disabledExecuteQuery() throws SQLException {
+        return statement.executeQuery(QUERY);
+    }
+
+    @Benchmark
+    public int rawPreparedExecuteUpdate() throws SQLException {
+        rawPreparedStatement.setString(1, "name");
+        rawPreparedStatement.setLong(2, 42L);
+        return rawPreparedStatement.executeUpdate();
+    }
+
+    @Benchmark
+    public int disabledPreparedExecuteUpdate() throws SQLException {
+        preparedStatement.setString(1, "name");
+        preparedStatement.setLong(2, 42L);
+        return preparedStatement.executeUpdate();
+    }
+
+    @Benchmark
+    public int[] rawExecuteBatch() throws SQLException {
+        rawStatement.addBatch(UPDATE);
+        return rawStatement.executeBatch();
+    }
+
+    @Benchmark
+    public int[] disabledExecuteBatch() throws SQLException {
+        statement.addBatch(UPDATE);
+        return statement.executeBatch();
+    }
+}
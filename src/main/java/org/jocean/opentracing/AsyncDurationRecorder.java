@@ -0,0 +1,433 @@
+package org.jocean.opentracing;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * moves {@link DurationRecorder#record} off the caller thread: callers claim a slot of a
+ * preallocated multi-producer ring buffer and write the duration plus interned tag ids into it,
+ * a background drainer replays the events in batches to the wrapped recorder.
+ * <p>
+ * callers never block and, once their tags have been seen, never allocate; when the buffer is
+ * full or an event carries more than {@value #MAX_TAGS} tags, the event is dropped and counted.
+ * once {@value #MAX_DISTINCT_TAGS} distinct tags have been seen, events with new ones carry a copy
+ * of their tags through the buffer instead of ids.
+ */
+public class AsyncDurationRecorder implements DurationRecorder, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncDurationRecorder.class);
+
+    static final int MAX_TAGS = 10;
+
+    static final int MAX_DISTINCT_TAGS = 1 << 16;
+
+    private static final int CHUNK_BITS = 10;
+
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    // tag ids: -1 for null tags, NO_ID for a tag beyond MAX_DISTINCT_TAGS
+    private static final int NO_ID = -2;
+
+    // resolved tag arrays the drainer keeps, cleared once it holds that many
+    static final int MAX_CACHED_TAG_SETS = 1 << 12;
+
+    private static final TimeUnit[] UNITS = TimeUnit.values();
+
+    private final DurationRecorder delegate;
+    private final int mask;
+    private final int batchSize;
+    private final long idleParkNanos;
+
+    // slot fields, indexed by (sequence & mask)
+    private final long[] amounts;
+    private final byte[] units;
+    private final byte[] tagCounts;
+    private final int[] tagIds;
+    // the event's own tags when one of them has no id, null otherwise
+    private final String[][] rawTags;
+    // sequence published into each slot, -1 while never written
+    private final AtomicLongArray published;
+
+    private final AtomicLong producerSequence = new AtomicLong();
+    private volatile long consumerSequence = 0;
+
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong drained = new AtomicLong();
+
+    private final ConcurrentHashMap<String, Integer> tagToId = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    // names by id, in chunks allocated as ids are handed out
+    private final AtomicReferenceArray<String[]> idToTag =
+            new AtomicReferenceArray<>(MAX_DISTINCT_TAGS >>> CHUNK_BITS);
+    private final AtomicBoolean saturated = new AtomicBoolean();
+
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    public AsyncDurationRecorder(final DurationRecorder delegate) {
+        this(delegate, 1 << 14, 256, TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    /**
+     * @param capacity      ring buffer slots, rounded up to a power of two
+     * @param batchSize     max events handed to the delegate per drain cycle
+     * @param idleParkNanos how long the drainer sleeps once the buffer is empty
+     */
+    public AsyncDurationRecorder(final DurationRecorder delegate, final int capacity, final int batchSize,
+            final long idleParkNanos) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity and batchSize must be positive");
+        }
+        final int size = ceilingPowerOfTwo(capacity);
+        this.delegate = delegate;
+        this.mask = size - 1;
+        this.batchSize = batchSize;
+        this.idleParkNanos = idleParkNanos;
+        this.amounts = new long[size];
+        this.units = new byte[size];
+        this.tagCounts = new byte[size];
+        this.tagIds = new int[size * MAX_TAGS];
+        this.rawTags = new String[size][];
+        this.published = new AtomicLongArray(size);
+        for (int idx = 0; idx < size; idx++) {
+            this.published.lazySet(idx, -1L);
+        }
+
+        this.drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }}, "async-duration-recorder");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    @Override
+    public boolean recordsErrors() {
+        return delegate.recordsErrors();
+    }
+
+    @Override
+    public boolean recordsFingerprints() {
+        return delegate.recordsFingerprints();
+    }
+
+    @Override
+    public void record(final long amount, final TimeUnit unit, final String... tags) {
+        final int count = null != tags ? tags.length : 0;
+        if (count > MAX_TAGS) {
+            dropped.increment();
+            return;
+        }
+        final long seq = claim();
+        if (seq < 0) {
+            return;
+        }
+        final int slot = (int) (seq & mask);
+        final int base = slot * MAX_TAGS;
+        boolean complete = true;
+        for (int idx = 0; idx < count; idx++) {
+            final int id = idOf(tags[idx]);
+            tagIds[base + idx] = id;
+            complete &= NO_ID != id;
+        }
+        publish(seq, slot, amount, unit, count, complete ? null : tags.clone());
+    }
+
+    @Override
+    public void record(final long amount, final TimeUnit unit,
+            final String key1, final String value1,
+            final String key2, final String value2,
+            final String key3, final String value3) {
+        final long seq = claim();
+        if (seq < 0) {
+            return;
+        }
+        final int slot = (int) (seq & mask);
+        final int base = slot * MAX_TAGS;
+        tagIds[base] = idOf(key1);
+        tagIds[base + 1] = idOf(value1);
+        tagIds[base + 2] = idOf(key2);
+        tagIds[base + 3] = idOf(value2);
+        tagIds[base + 4] = idOf(key3);
+        tagIds[base + 5] = idOf(value3);
+        publish(seq, slot, amount, unit, 6, complete(base, 6) ? null
+                : new String[] { key1, value1, key2, value2, key3, value3 });
+    }
+
+    @Override
+    public void record(final long amount, final TimeUnit unit,
+            final String key1, final String value1,
+            final String key2, final String value2,
+            final String key3, final String value3,
+            final String key4, final String value4) {
+        final long seq = claim();
+        if (seq < 0) {
+            return;
+        }
+        final int slot = (int) (seq & mask);
+        final int base = slot * MAX_TAGS;
+        tagIds[base] = idOf(key1);
+        tagIds[base + 1] = idOf(value1);
+        tagIds[base + 2] = idOf(key2);
+        tagIds[base + 3] = idOf(value2);
+        tagIds[base + 4] = idOf(key3);
+        tagIds[base + 5] = idOf(value3);
+        tagIds[base + 6] = idOf(key4);
+        tagIds[base + 7] = idOf(value4);
+        publish(seq, slot, amount, unit, 8, complete(base, 8) ? null
+                : new String[] { key1, value1, key2, value2, key3, value3, key4, value4 });
+    }
+
+    /**
+     * @return events dropped because the buffer was full or they carried too many tags
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return events handed to the wrapped recorder so far
+     */
+    public long drainedCount() {
+        return drained.get();
+    }
+
+    /**
+     * @return events written but not yet drained
+     */
+    public int pending() {
+        return (int) (producerSequence.get() - consumerSequence);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int ceilingPowerOfTwo(final int value) {
+        if (value >= 1 << 30) {
+            return 1 << 30;
+        }
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private long claim() {
+        for (;;) {
+            final long seq = producerSequence.get();
+            if (seq - consumerSequence > mask) {
+                dropped.increment();
+                return -1L;
+            }
+            if (producerSequence.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    private boolean complete(final int base, final int count) {
+        for (int idx = 0; idx < count; idx++) {
+            if (NO_ID == tagIds[base + idx]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param raw the event's tags when one of them has no id, {@code null} otherwise
+     */
+    private void publish(final long seq, final int slot, final long amount, final TimeUnit unit, final int count,
+            final String[] raw) {
+        amounts[slot] = amount;
+        units[slot] = (byte) unit.ordinal();
+        tagCounts[slot] = (byte) count;
+        rawTags[slot] = raw;
+        // release store: the slot fields above become visible to the drainer before the sequence
+        published.lazySet(slot, seq);
+    }
+
+    private int idOf(final String tag) {
+        if (null == tag) {
+            return -1;
+        }
+        final Integer id = tagToId.get(tag);
+        return null != id ? id.intValue() : register(tag);
+    }
+
+    // racing registrations of one tag each store its name, the id of the first put wins
+    private int register(final String tag) {
+        if (nextId.get() >= MAX_DISTINCT_TAGS) {
+            return saturated();
+        }
+        final int id = nextId.getAndIncrement();
+        if (id >= MAX_DISTINCT_TAGS) {
+            return saturated();
+        }
+        chunkOf(id)[id & CHUNK_MASK] = tag;
+        // the put publishes the name to every thread that gets the id from tagToId
+        final Integer raced = tagToId.putIfAbsent(tag, id);
+        return null != raced ? raced.intValue() : id;
+    }
+
+    private int saturated() {
+        if (saturated.compareAndSet(false, true)) {
+            LOG.warn("{} has seen {} distinct tags, events with new ones copy their tags from now on, "
+                    + "check for tags of unbounded cardinality", this, MAX_DISTINCT_TAGS);
+        }
+        return NO_ID;
+    }
+
+    private String[] chunkOf(final int id) {
+        final int index = id >>> CHUNK_BITS;
+        final String[] chunk = idToTag.get(index);
+        if (null != chunk) {
+            return chunk;
+        }
+        final String[] created = new String[CHUNK_MASK + 1];
+        return idToTag.compareAndSet(index, null, created) ? created : idToTag.get(index);
+    }
+
+    private String nameOf(final int id) {
+        return id >= 0 ? idToTag.get(id >>> CHUNK_BITS)[id & CHUNK_MASK] : null;
+    }
+
+    private void drainLoop() {
+        final Map<TagsKey, String[]> tagsCache = new HashMap<>();
+        final TagsKey probe = new TagsKey();
+        while (running || pending() > 0) {
+            final int count = drainBatch(tagsCache, probe);
+            if (0 == count) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(this, idleParkNanos);
+            }
+        }
+    }
+
+    private int drainBatch(final Map<TagsKey, String[]> tagsCache, final TagsKey probe) {
+        int count = 0;
+        long seq = consumerSequence;
+        while (count < batchSize) {
+            final int slot = (int) (seq & mask);
+            if (published.get(slot) != seq) {
+                break;
+            }
+            final int tagCount = tagCounts[slot];
+            final long amount = amounts[slot];
+            final TimeUnit unit = UNITS[units[slot]];
+            String[] tags = rawTags[slot];
+            if (null != tags) {
+                rawTags[slot] = null;
+            } else {
+                probe.set(tagIds, slot * MAX_TAGS, tagCount);
+                tags = tagsCache.get(probe);
+                if (null == tags) {
+                    tags = resolve(probe);
+                    if (tagsCache.size() >= MAX_CACHED_TAG_SETS) {
+                        // rebuilt from the tag ids by the events that follow
+                        tagsCache.clear();
+                    }
+                    tagsCache.put(probe.copy(), tags);
+                }
+            }
+            seq++;
+            // hand the slot back to the producers before calling out
+            consumerSequence = seq;
+            count++;
+            try {
+                delegate.record(amount, unit, tags);
+            } catch (final Exception e) {
+                LOG.warn("exception when record duration by {}, detail: {}", delegate, e.toString());
+            }
+        }
+        if (count > 0) {
+            drained.addAndGet(count);
+        }
+        return count;
+    }
+
+    private String[] resolve(final TagsKey key) {
+        final String[] tags = new String[key.count];
+        for (int idx = 0; idx < key.count; idx++) {
+            tags[idx] = nameOf(key.ids[idx]);
+        }
+        return tags;
+    }
+
+    private static final class TagsKey {
+        final int[] ids = new int[MAX_TAGS];
+        int count;
+        int hash;
+
+        void set(final int[] source, final int offset, final int count) {
+            this.count = count;
+            int h = count;
+            for (int idx = 0; idx < count; idx++) {
+                ids[idx] = source[offset + idx];
+                h = 31 * h + ids[idx];
+            }
+            this.hash = h;
+        }
+
+        TagsKey copy() {
+            final TagsKey key = new TagsKey();
+            System.arraycopy(ids, 0, key.ids, 0, count);
+            key.count = count;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof TagsKey)) {
+                return false;
+            }
+            final TagsKey other = (TagsKey) obj;
+            if (count != other.count || hash != other.hash) {
+                return false;
+            }
+            for (int idx = 0; idx < count; idx++) {
+                if (ids[idx] != other.ids[idx]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncDurationRecorder [delegate=" + delegate + ", capacity=" + capacity()
+                + ", pending=" + pending() + ", dropped=" + droppedCount() + "]";
+    }
+}
@@ -5,6 +5,38 @@ import java.util.concurrent.TimeUnit;
 public interface DurationRecorder {
     public void record(final long amount, final TimeUnit unit, final String...tags);
 
+    // fixed arity variants picked by callers with three or four tag pairs, so implementations may avoid the varargs array
+    default void record(final long amount, final TimeUnit unit,
+            final String key1, final String value1,
+            final String key2, final String value2,
+            final String key3, final String value3) {
+        record(amount, unit, new String[] { key1, value1, key2, value2, key3, value3 });
+    }
+
+    default void record(final long amount, final TimeUnit unit,
+            final String key1, final String value1,
+            final String key2, final String value2,
+            final String key3, final String value3,
+            final String key4, final String value4) {
+        record(amount, unit, new String[] { key1, value1, key2, value2, key3, value3, key4, value4 });
+    }
+
+    /**
+     * @return true: the jdbc wrappers add {@code error=true} to the tags of failed calls, otherwise
+     *         failures are recorded with the same tags as successes
+     */
+    default boolean recordsErrors() {
+        return false;
+    }
+
+    /**
+     * @return true: the jdbc wrappers add the statement's {@code db.fingerprint}, a series per
+     *         statement rather than per operation
+     */
+    default boolean recordsFingerprints() {
+        return false;
+    }
+
     static DurationRecorder _NoopRecorder = new DurationRecorder() {
         @Override
         public void record(final long amount, final TimeUnit unit, final String... tags) {
@@ -0,0 +1,29 @@
+package org.jocean.opentracing;
+
+import io.opentracing.Tracer;
+
+final class FixedTracingContext implements TracingContext {
+
+    private final Tracer tracer;
+    private final DurationRecorder recorder;
+
+    FixedTracingContext(final Tracer tracer, final DurationRecorder recorder) {
+        this.tracer = tracer;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Tracer tracer() {
+        return tracer;
+    }
+
+    @Override
+    public DurationRecorder durationRecorder() {
+        return recorder;
+    }
+
+    @Override
+    public String toString() {
+        return "TracingContext [tracer=" + tracer + ", recorder=" + recorder + "]";
+    }
+}
@@ -0,0 +1,300 @@
+package org.jocean.opentracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import io.opentracing.tag.Tags;
+
+/**
+ * aggregates durations into HdrHistograms, one series per distinct tag combination
+ * (e.g. db.type/db.user/db.operation as emitted by the jdbc wrappers, plus db.fingerprint with
+ * {@link #setRecordsFingerprints}).
+ * <p>
+ * each series is striped over several {@link Recorder}s picked by the recording thread, so
+ * writers only contend with the few threads sharing their stripe and never take a lock.
+ * a tag pair {@code error=true} is not part of the series key, it counts as an error of the series.
+ * exporters pull {@link #intervalSnapshots()}, which resets every series.
+ * <p>
+ * series are kept until {@link #reset()}: memory is bounded by {@code maxSeries} series of
+ * {@code stripes} recorders each (two histograms per recorder plus one recycled), size both to
+ * the expected tag cardinality. combinations past {@code maxSeries} share one "overflow" series.
+ */
+public class HistogramDurationRecorder implements DurationRecorder {
+
+    private static final String ERROR_KEY = Tags.ERROR.getKey();
+    private static final String NULL_VALUE = "(null)";
+
+    private final TimeUnit resolution;
+    private final int significantDigits;
+    private final int stripes;
+    private final int maxSeries;
+
+    private volatile Generation current;
+    private volatile boolean recordsFingerprints;
+
+    public HistogramDurationRecorder() {
+        this(TimeUnit.MICROSECONDS, 2, Runtime.getRuntime().availableProcessors(), 4096);
+    }
+
+    /**
+     * @param resolution        unit values are recorded and reported in
+     * @param significantDigits HdrHistogram precision, 0..5
+     * @param stripes           recorders per series, rounded up to a power of two and capped at 64
+     * @param maxSeries         distinct tag combinations, later ones are folded into one "overflow" series
+     */
+    public HistogramDurationRecorder(final TimeUnit resolution, final int significantDigits, final int stripes,
+            final int maxSeries) {
+        this.resolution = resolution;
+        this.significantDigits = significantDigits;
+        this.stripes = Math.min(64, stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1);
+        this.maxSeries = maxSeries;
+        this.current = new Generation();
+    }
+
+    @Override
+    public void record(final long amount, final TimeUnit unit, final String... tags) {
+        final Generation generation = current;
+        boolean failed = false;
+        Node node = generation.root;
+        for (int idx = 0; idx + 1 < tags.length && null != node; idx += 2) {
+            if (ERROR_KEY.equals(tags[idx])) {
+                failed = "true".equals(tags[idx + 1]);
+            } else {
+                node = next(generation, node, tags[idx], tags[idx + 1]);
+            }
+        }
+        seriesOf(generation, node, tags).record(resolution.convert(amount, unit), failed);
+    }
+
+    @Override
+    public void record(final long amount, final TimeUnit unit,
+            final String key1, final String value1,
+            final String key2, final String value2,
+            final String key3, final String value3) {
+        record(amount, unit, key1, value1, key2, value2, key3, value3, false);
+    }
+
+    private void record(final long amount, final TimeUnit unit,
+            final String key1, final String value1,
+            final String key2, final String value2,
+            final String key3, final String value3,
+            final boolean failed) {
+        final Generation generation = current;
+        final Node node1 = next(generation, generation.root, key1, value1);
+        final Node node2 = null != node1 ? next(generation, node1, key2, value2) : null;
+        final Node node3 = null != node2 ? next(generation, node2, key3, value3) : null;
+        final Series series = null != node3 ? node3.series : generation.overflow;
+        if (null != series) {
+            series.record(resolution.convert(amount, unit), failed);
+        } else {
+            record(amount, unit, failed ? new String[] { key1, value1, key2, value2, key3, value3, ERROR_KEY, "true" }
+                    : new String[] { key1, value1, key2, value2, key3, value3 });
+        }
+    }
+
+    @Override
+    public void record(final long amount, final TimeUnit unit,
+            final String key1, final String value1,
+            final String key2, final String value2,
+            final String key3, final String value3,
+            final String key4, final String value4) {
+        if (ERROR_KEY.equals(key4)) {
+            record(amount, unit, key1, value1, key2, value2, key3, value3, "true".equals(value4));
+            return;
+        }
+        final Generation generation = current;
+        final Node node1 = next(generation, generation.root, key1, value1);
+        final Node node2 = null != node1 ? next(generation, node1, key2, value2) : null;
+        final Node node3 = null != node2 ? next(generation, node2, key3, value3) : null;
+        final Node node4 = null != node3 ? next(generation, node3, key4, value4) : null;
+        final Series series = null != node4 ? node4.series : generation.overflow;
+        if (null != series) {
+            series.record(resolution.convert(amount, unit), false);
+        } else {
+            record(amount, unit, new String[] { key1, value1, key2, value2, key3, value3, key4, value4 });
+        }
+    }
+
+    /**
+     * error=true is counted within the series, it adds no series of its own
+     */
+    @Override
+    public boolean recordsErrors() {
+        return true;
+    }
+
+    @Override
+    public boolean recordsFingerprints() {
+        return recordsFingerprints;
+    }
+
+    /**
+     * @param recordsFingerprints true: a series per statement fingerprint, mind maxSeries
+     */
+    public void setRecordsFingerprints(final boolean recordsFingerprints) {
+        this.recordsFingerprints = recordsFingerprints;
+    }
+
+    /**
+     * @return one snapshot per series that saw any call since the previous invocation,
+     *         all series start a new interval
+     */
+    public List<LatencySnapshot> intervalSnapshots() {
+        final List<LatencySnapshot> snapshots = new ArrayList<>();
+        for (final Series series : current.allSeries) {
+            final LatencySnapshot snapshot = series.snapshot();
+            if (null != snapshot) {
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    public int seriesCount() {
+        return current.seriesCount.get();
+    }
+
+    /**
+     * drops every series, along with what they recorded since the last {@link #intervalSnapshots()},
+     * e.g. once {@link #seriesCount()} nears maxSeries with series of statements long gone. calls
+     * racing with the reset may still go to the dropped series.
+     */
+    public void reset() {
+        current = new Generation();
+    }
+
+    private static String nullsafe(final String value) {
+        return null != value ? value : NULL_VALUE;
+    }
+
+    // null once maxSeries is reached and the path doesn't exist yet, so the tree stays bounded as well
+    private Node next(final Generation generation, final Node node, final String key, final String value) {
+        final boolean creatable = generation.seriesCount.get() < maxSeries;
+        final Node keyNode = node.child(key, creatable);
+        return null != keyNode ? keyNode.child(nullsafe(value), creatable) : null;
+    }
+
+    private Series seriesOf(final Generation generation, final Node node, final String[] tags) {
+        if (null == node) {
+            return generation.overflow;
+        }
+        final Series series = node.series;
+        return null != series ? series : createSeries(generation, node, tags);
+    }
+
+    private Series createSeries(final Generation generation, final Node node, final String[] tags) {
+        synchronized (node) {
+            if (null != node.series) {
+                return node.series;
+            }
+            if (generation.seriesCount.get() >= maxSeries) {
+                node.series = generation.overflow;
+                return generation.overflow;
+            }
+            final Map<String, String> tagMap = new LinkedHashMap<>();
+            for (int idx = 0; idx + 1 < tags.length; idx += 2) {
+                if (!ERROR_KEY.equals(tags[idx])) {
+                    tagMap.put(tags[idx], nullsafe(tags[idx + 1]));
+                }
+            }
+            final Series series = new Series(Collections.unmodifiableMap(tagMap));
+            generation.seriesCount.incrementAndGet();
+            generation.allSeries.add(series);
+            node.series = series;
+            return series;
+        }
+    }
+
+    // the series and their tag tree, replaced as a whole by reset()
+    private final class Generation {
+        final Node root = new Node();
+        final AtomicInteger seriesCount = new AtomicInteger();
+        final ConcurrentLinkedQueue<Series> allSeries = new ConcurrentLinkedQueue<>();
+        final Series overflow = new Series(Collections.singletonMap("overflow", "true"));
+
+        Generation() {
+            allSeries.add(overflow);
+        }
+    }
+
+    // a tag path, alternating key and value levels
+    private static final class Node {
+        private final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>(4);
+        volatile Series series;
+
+        Node child(final String name, final boolean creatable) {
+            final Node child = children.get(name);
+            if (null != child || !creatable) {
+                return child;
+            }
+            final Node created = new Node();
+            final Node existed = children.putIfAbsent(name, created);
+            return null != existed ? existed : created;
+        }
+    }
+
+    private final class Series {
+        private final Map<String, String> tags;
+        private final Recorder[] recorders;
+        private final Histogram[] recycled;
+        private final LongAdder errors = new LongAdder();
+        private long intervalStartMillis = System.currentTimeMillis();
+
+        Series(final Map<String, String> tags) {
+            this.tags = tags;
+            this.recorders = new Recorder[stripes];
+            this.recycled = new Histogram[stripes];
+            for (int idx = 0; idx < stripes; idx++) {
+                // packed: series of rarely used statements stay small
+                this.recorders[idx] = new Recorder(significantDigits, true);
+            }
+        }
+
+        void record(final long value, final boolean failed) {
+            recorders[(int) Thread.currentThread().getId() & (stripes - 1)].recordValue(value >= 0 ? value : 0);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        synchronized LatencySnapshot snapshot() {
+            final long now = System.currentTimeMillis();
+            final Histogram merged = new Histogram(significantDigits);
+            for (int idx = 0; idx < stripes; idx++) {
+                recycled[idx] = recorders[idx].getIntervalHistogram(recycled[idx]);
+                merged.add(recycled[idx]);
+            }
+            final long errorCount = errors.sumThenReset();
+            final long start = intervalStartMillis;
+            intervalStartMillis = now;
+            if (0 == merged.getTotalCount() && 0 == errorCount) {
+                return null;
+            }
+            return new LatencySnapshot(tags, resolution, start, now,
+                    merged.getTotalCount(),
+                    errorCount,
+                    merged.getValueAtPercentile(50.0),
+                    merged.getValueAtPercentile(99.0),
+                    merged.getValueAtPercentile(99.9),
+                    merged.getMaxValue(),
+                    merged.getMean());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramDurationRecorder [resolution=" + resolution + ", stripes=" + stripes + ", series="
+                + seriesCount() + "/" + maxSeries + "]";
+    }
+}
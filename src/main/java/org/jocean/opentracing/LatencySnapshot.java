@@ -0,0 +1,99 @@
+package org.jocean.opentracing;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * latency of one tag combination during one interval of a {@link HistogramDurationRecorder}.
+ */
+public final class LatencySnapshot {
+
+    private final Map<String, String> tags;
+    private final TimeUnit unit;
+    private final long startTimeMillis;
+    private final long endTimeMillis;
+    private final long count;
+    private final long errors;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+    private final double mean;
+
+    LatencySnapshot(final Map<String, String> tags,
+            final TimeUnit unit,
+            final long startTimeMillis,
+            final long endTimeMillis,
+            final long count,
+            final long errors,
+            final long p50,
+            final long p99,
+            final long p999,
+            final long max,
+            final double mean) {
+        this.tags = tags;
+        this.unit = unit;
+        this.startTimeMillis = startTimeMillis;
+        this.endTimeMillis = endTimeMillis;
+        this.count = count;
+        this.errors = errors;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+        this.mean = mean;
+    }
+
+    public Map<String, String> tags() {
+        return tags;
+    }
+
+    /**
+     * @return unit of p50/p99/p999/max/mean
+     */
+    public TimeUnit unit() {
+        return unit;
+    }
+
+    public long startTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public long endTimeMillis() {
+        return endTimeMillis;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long errors() {
+        return errors;
+    }
+
+    public long p50() {
+        return p50;
+    }
+
+    public long p99() {
+        return p99;
+    }
+
+    public long p999() {
+        return p999;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return mean;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot [tags=" + tags + ", count=" + count + ", errors=" + errors + ", p50=" + p50
+                + ", p99=" + p99 + ", p999=" + p999 + ", max=" + max + ", unit=" + unit + "]";
+    }
+}
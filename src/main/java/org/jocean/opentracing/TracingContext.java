@@ -0,0 +1,27 @@
+package org.jocean.opentracing;
+
+import io.opentracing.Tracer;
+
+/**
+ * the tracer and duration recorder instrumented code reports to. resolved once, by a connection,
+ * a statement or a transaction, and carried along from there: the hot path reads a field instead
+ * of asking {@link TracingUtil} on every call.
+ */
+public interface TracingContext {
+
+    /**
+     * @return {@code null}: up to the instrumentation, the jdbc one falls back to the GlobalTracer
+     */
+    public Tracer tracer();
+
+    /**
+     * @return {@code null}: durations are not recorded
+     */
+    public DurationRecorder durationRecorder();
+
+    static TracingContext of(final Tracer tracer, final DurationRecorder recorder) {
+        return null == tracer && null == recorder ? _EmptyContext : new FixedTracingContext(tracer, recorder);
+    }
+
+    static TracingContext _EmptyContext = new FixedTracingContext(null, null);
+}
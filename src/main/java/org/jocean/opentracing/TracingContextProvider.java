@@ -0,0 +1,17 @@
+package org.jocean.opentracing;
+
+/**
+ * where instrumentation looks up the current {@link TracingContext} when none was passed to it
+ * explicitly. the default one reads the thread locals set through {@link TracingUtil}; plug in
+ * another one, e.g. backed by a reactive subscriber context or a request scope, with
+ * {@link TracingUtil#setContextProvider} or as a {@link java.util.ServiceLoader} service.
+ * <p>
+ * asked once per connection, statement or transaction, not once per call.
+ */
+public interface TracingContextProvider {
+
+    /**
+     * @return never {@code null}, {@link TracingContext#_EmptyContext} when there's nothing
+     */
+    public TracingContext current();
+}
@@ -1,11 +1,24 @@
 package org.jocean.opentracing;
 
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+
 import io.opentracing.Tracer;
 
 public class TracingUtil {
     final static ThreadLocal<Tracer> tlsTracer = new ThreadLocal<>();
     final static ThreadLocal<DurationRecorder> tlsDurationRecorder = new ThreadLocal<>();
 
+    static final TracingContextProvider _ThreadLocalProvider = new TracingContextProvider() {
+        @Override
+        public TracingContext current() {
+            return TracingContext.of(tlsTracer.get(), tlsDurationRecorder.get());
+        }};
+
+    private static volatile TracingContextProvider contextProvider = loadContextProvider();
+
     public static void set(final Tracer tracer) {
         tlsTracer.set(tracer);
     }
@@ -23,4 +36,75 @@ public class TracingUtil {
 //        return null != recorder ? recorder : DurationRecorder._NoopRecorder;
         return tlsDurationRecorder.get();
     }
+
+    /**
+     * @return what the installed {@link TracingContextProvider} considers current
+     */
+    public static TracingContext currentContext() {
+        return contextProvider.current();
+    }
+
+    /**
+     * @param provider {@code null}: back to the thread local default
+     */
+    public static void setContextProvider(final TracingContextProvider provider) {
+        contextProvider = null != provider ? provider : _ThreadLocalProvider;
+    }
+
+    /**
+     * runs {@code call} with {@code context} bound to the calling thread, the previous binding is
+     * restored afterwards. only the thread local default provider sees the binding.
+     */
+    public static <T> T callWith(final TracingContext context, final Callable<T> call) throws Exception {
+        final Tracer tracer = tlsTracer.get();
+        final DurationRecorder recorder = tlsDurationRecorder.get();
+        tlsTracer.set(context.tracer());
+        tlsDurationRecorder.set(context.durationRecorder());
+        try {
+            return call.call();
+        } finally {
+            restore(tracer, recorder);
+        }
+    }
+
+    /**
+     * @see #callWith(TracingContext, Callable)
+     */
+    public static void runWith(final TracingContext context, final Runnable run) {
+        final Tracer tracer = tlsTracer.get();
+        final DurationRecorder recorder = tlsDurationRecorder.get();
+        tlsTracer.set(context.tracer());
+        tlsDurationRecorder.set(context.durationRecorder());
+        try {
+            run.run();
+        } finally {
+            restore(tracer, recorder);
+        }
+    }
+
+    private static void restore(final Tracer tracer, final DurationRecorder recorder) {
+        // remove() rather than set(null): don't leave empty entries behind on (virtual) threads
+        if (null != tracer) {
+            tlsTracer.set(tracer);
+        } else {
+            tlsTracer.remove();
+        }
+        if (null != recorder) {
+            tlsDurationRecorder.set(recorder);
+        } else {
+            tlsDurationRecorder.remove();
+        }
+    }
+
+    private static TracingContextProvider loadContextProvider() {
+        try {
+            final Iterator<TracingContextProvider> providers = ServiceLoader.load(TracingContextProvider.class).iterator();
+            if (providers.hasNext()) {
+                return providers.next();
+            }
+        } catch (final ServiceConfigurationError e) {
+            // a broken registration must not break the instrumented application
+        }
+        return _ThreadLocalProvider;
+    }
 }
@@ -0,0 +1,231 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.jocean.opentracing.DurationRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * backs off tracing under load: every {@value #EVALUATE_INTERVAL_MILLIS}ms the in-flight statements
+ * ({@link StatementStatistics#inFlight()}), the rate of spans sampled here and, when given, the
+ * recorder's queue depth are compared with their limits. each interval with a limit exceeded halves
+ * what the wrapped sampler lets through, up to 1/{@value #MAX_REDUCTION}, then tracing stops
+ * altogether (metrics only: statements are still timed). after {@code recoveryIntervals} calm
+ * intervals in a row, all signals below half their limits, it steps back one level; the span rate
+ * is judged as it would be one level back, so backing off doesn't count as calming down.
+ * <p>
+ * each transition is logged and, with {@link #setTransitionRecorder}, recorded as
+ * "AdaptiveTransition" with the time spent at the previous level and tags from/to.
+ * <p>
+ * intervals are measured with {@link JdbcTiming#setClock the jdbc tracing clock}.
+ */
+public class AdaptiveSampler implements Sampler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveSampler.class);
+
+    static final long EVALUATE_INTERVAL_MILLIS = 100L;
+
+    private static final long EVALUATE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(EVALUATE_INTERVAL_MILLIS);
+
+    static final int MAX_REDUCTION = 64;
+
+    // 0: as the wrapped sampler, 1..6: 1/2^level of it, 7: metrics only
+    private static final int METRICS_ONLY = Integer.numberOfTrailingZeros(MAX_REDUCTION) + 1;
+
+    static final String TRANSITION_OPERATION = "AdaptiveTransition";
+
+    private final Sampler sampler;
+
+    private volatile long maxInFlight = 256;
+    private volatile long maxSpansPerSecond = 1000;
+    private volatile long maxQueueDepth = -1;
+    private volatile int recoveryIntervals = 10;
+    private volatile LongSupplier queueDepth;
+    private volatile DurationRecorder transitionRecorder;
+
+    private volatile int level;
+    private volatile long nextEvaluation = JdbcTiming.clock().nanoTime() + EVALUATE_INTERVAL_NANOS;
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder sampledSpans = new LongAdder();
+    private final LongAdder transitions = new LongAdder();
+    // guards the fields below: the thread evaluating sees what the previous evaluation left
+    private final ReentrantLock evaluation = new ReentrantLock();
+    private long lastEvaluation = JdbcTiming.clock().nanoTime();
+    private long lastOffered;
+    private long lastSampledSpans;
+    private int calmIntervals;
+    private long levelSince = JdbcTiming.clock().nanoTime();
+
+    /**
+     * @param sampler decides while there's no load, {@code null}: trace everything
+     */
+    public AdaptiveSampler(final Sampler sampler) {
+        this.sampler = null != sampler ? sampler : Sampler._AlwaysSampler;
+    }
+
+    @Override
+    public boolean sample(final String dbType, final String operationName) {
+        evaluateIfDue();
+        offered.increment();
+        final int current = level;
+        if (current >= METRICS_ONLY) {
+            return false;
+        }
+        if (current > 0 && (ThreadLocalRandom.current().nextInt() & ((1 << current) - 1)) != 0) {
+            return false;
+        }
+        if (sampler.sample(dbType, operationName)) {
+            sampledSpans.increment();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean resample(final String dbType, final String operationName, final long durationMillis,
+            final boolean failed) {
+        return level < METRICS_ONLY && sampler.resample(dbType, operationName, durationMillis, failed);
+    }
+
+    @Override
+    public boolean resample(final String dbType, final String operationName, final String fingerprint,
+            final long durationMillis, final boolean failed) {
+        return level < METRICS_ONLY && sampler.resample(dbType, operationName, fingerprint, durationMillis, failed);
+    }
+
+    private void evaluateIfDue() {
+        if (JdbcTiming.clock().nanoTime() - nextEvaluation < 0 || !evaluation.tryLock()) {
+            return;
+        }
+        try {
+            final long now = JdbcTiming.clock().nanoTime();
+            // another thread may have evaluated since the check above
+            if (now - nextEvaluation >= 0) {
+                nextEvaluation = now + EVALUATE_INTERVAL_NANOS;
+                evaluate(now);
+            }
+        } finally {
+            evaluation.unlock();
+        }
+    }
+
+    private void evaluate(final long now) {
+        final long sampled = sampledSpans.sum();
+        final long calls = offered.sum();
+        final double seconds = Math.max(1L, now - lastEvaluation) / 1e9;
+        final long spansPerSecond = (long) ((sampled - lastSampledSpans) / seconds);
+        final long callsPerSecond = (long) ((calls - lastOffered) / seconds);
+        lastEvaluation = now;
+        lastSampledSpans = sampled;
+        lastOffered = calls;
+
+        final long inFlight = StatementStatistics.inFlight();
+        final LongSupplier depthSupplier = queueDepth;
+        final long depth = null != depthSupplier ? depthSupplier.getAsLong() : -1;
+
+        if (exceeds(inFlight, maxInFlight) || exceeds(spansPerSecond, maxSpansPerSecond)
+                || exceeds(depth, maxQueueDepth)) {
+            calmIntervals = 0;
+            if (level < METRICS_ONLY) {
+                transit(level + 1, now, inFlight, spansPerSecond, depth);
+            }
+        } else if (level > 0) {
+            // metrics only samples nothing, one level back would let through 1/MAX_REDUCTION at most
+            final long spansOneLevelBack = level >= METRICS_ONLY ? callsPerSecond / MAX_REDUCTION : spansPerSecond * 2;
+            if (calm(inFlight, maxInFlight) && calm(spansOneLevelBack, maxSpansPerSecond)
+                    && calm(depth, maxQueueDepth)) {
+                if (++calmIntervals >= recoveryIntervals) {
+                    calmIntervals = 0;
+                    transit(level - 1, now, inFlight, spansPerSecond, depth);
+                }
+            } else {
+                calmIntervals = 0;
+            }
+        }
+    }
+
+    private static boolean exceeds(final long value, final long limit) {
+        return limit >= 0 && value > limit;
+    }
+
+    private static boolean calm(final long value, final long limit) {
+        return limit < 0 || value <= limit / 2;
+    }
+
+    private void transit(final int to, final long now, final long inFlight, final long spansPerSecond,
+            final long depth) {
+        final int from = level;
+        level = to;
+        transitions.increment();
+        LOG.info("adaptive tracing {} -> {}, inFlight: {}, spansPerSecond: {}, queueDepth: {}", nameOf(from), nameOf(to),
+                inFlight, spansPerSecond, depth);
+        final DurationRecorder recorder = transitionRecorder;
+        if (null != recorder) {
+            recorder.record(now - levelSince, TimeUnit.NANOSECONDS,
+                    "db.operation", TRANSITION_OPERATION,
+                    "from", nameOf(from),
+                    "to", nameOf(to));
+        }
+        levelSince = now;
+    }
+
+    private static String nameOf(final int level) {
+        return 0 == level ? "full" : level >= METRICS_ONLY ? "metricsOnly" : "1/" + (1 << level);
+    }
+
+    /**
+     * @return "full", "1/2" .. "1/64" or "metricsOnly"
+     */
+    public String mode() {
+        return nameOf(level);
+    }
+
+    public long transitions() {
+        return transitions.sum();
+    }
+
+    /**
+     * @param maxInFlight statements executing at once, negative: not watched
+     */
+    public void setMaxInFlight(final long maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @param maxSpansPerSecond spans sampled here per second, negative: not watched
+     */
+    public void setMaxSpansPerSecond(final long maxSpansPerSecond) {
+        this.maxSpansPerSecond = maxSpansPerSecond;
+    }
+
+    /**
+     * @param queueDepth    e.g. {@code asyncRecorder::pending}, {@code null}: not watched
+     * @param maxQueueDepth beyond that the queue counts as congested
+     */
+    public void setQueueDepth(final LongSupplier queueDepth, final long maxQueueDepth) {
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = null != queueDepth ? maxQueueDepth : -1;
+    }
+
+    /**
+     * @param recoveryIntervals calm evaluations in a row before stepping back one level
+     */
+    public void setRecoveryIntervals(final int recoveryIntervals) {
+        this.recoveryIntervals = Math.max(1, recoveryIntervals);
+    }
+
+    public void setTransitionRecorder(final DurationRecorder transitionRecorder) {
+        this.transitionRecorder = transitionRecorder;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveSampler [sampler=" + sampler + ", mode=" + mode() + ", maxInFlight=" + maxInFlight
+                + ", maxSpansPerSecond=" + maxSpansPerSecond + ", maxQueueDepth=" + maxQueueDepth + "]";
+    }
+}
@@ -0,0 +1,125 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.Arrays;
+
+import io.opentracing.Span;
+
+/**
+ * what a pending batch holds, in bounded memory however many rows are added: the row count, up
+ * to {@value #MAX_STATEMENTS} distinct statements with their row counts (rows of further ones
+ * are only counted as "other") and the parameters of the first {@value #MAX_PARAMETER_SETS}
+ * rows. the buffer is reused across batches.
+ */
+final class BatchBuffer implements SpanDecorator {
+
+    static final int MAX_STATEMENTS = 16;
+    static final int MAX_PARAMETER_SETS = 3;
+
+    static final String DB_BATCH_SIZE = "db.batch.size";
+    // fingerprint:rows pairs, comma separated
+    static final String DB_BATCH_STATEMENTS = "db.batch.statements";
+
+    private static final String[] PARAMETER_PREFIXES = new String[MAX_PARAMETER_SETS];
+
+    static {
+        for (int idx = 0; idx < MAX_PARAMETER_SETS; idx++) {
+            PARAMETER_PREFIXES[idx] = "sql.batch." + idx + ".param.";
+        }
+    }
+
+    private final NormalizedSql[] statements = new NormalizedSql[MAX_STATEMENTS];
+    private final long[] counts = new long[MAX_STATEMENTS];
+    private final ParameterBuffer[] parameterSets = new ParameterBuffer[MAX_PARAMETER_SETS];
+    private int distinct;
+    private int parameterSetCount;
+    private long otherRows;
+    private long rows;
+    private String firstSql;
+
+    /**
+     * @param sql        raw sql of the row, {@code null} for rows of a prepared statement
+     * @param normalized {@code null} counts as "other"
+     * @param params     bound parameters of the row, copied while fewer than
+     *                   {@value #MAX_PARAMETER_SETS} sets are held
+     */
+    void add(final String sql, final NormalizedSql normalized, final ParameterBuffer params) {
+        if (0 == rows++) {
+            firstSql = sql;
+        }
+        count(normalized);
+        if (null != params && parameterSetCount < MAX_PARAMETER_SETS) {
+            ParameterBuffer copy = parameterSets[parameterSetCount];
+            if (null == copy) {
+                copy = new ParameterBuffer();
+                parameterSets[parameterSetCount] = copy;
+            }
+            copy.copyFrom(params);
+            parameterSetCount++;
+        }
+    }
+
+    private void count(final NormalizedSql normalized) {
+        if (null == normalized) {
+            otherRows++;
+            return;
+        }
+        for (int idx = 0; idx < distinct; idx++) {
+            final NormalizedSql statement = statements[idx];
+            if (statement == normalized || statement.fingerprint() == normalized.fingerprint()) {
+                counts[idx]++;
+                return;
+            }
+        }
+        if (distinct < MAX_STATEMENTS) {
+            statements[distinct] = normalized;
+            counts[distinct] = 1;
+            distinct++;
+        } else {
+            otherRows++;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(statements, 0, distinct, null);
+        for (int idx = 0; idx < parameterSetCount; idx++) {
+            parameterSets[idx].clear();
+        }
+        distinct = 0;
+        parameterSetCount = 0;
+        otherRows = 0;
+        rows = 0;
+        firstSql = null;
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    /**
+     * @return raw sql of the first row when every row is that statement, {@code null} otherwise
+     */
+    String singleSql() {
+        return 1 == distinct && 0 == otherRows ? firstSql : null;
+    }
+
+    @Override
+    public void decorate(final Span span) {
+        span.setTag(DB_BATCH_SIZE, rows);
+        if (distinct > 0) {
+            final StringBuilder sb = new StringBuilder(distinct * 24);
+            for (int idx = 0; idx < distinct; idx++) {
+                if (idx > 0) {
+                    sb.append(',');
+                }
+                sb.append(statements[idx].fingerprintHex()).append(':').append(counts[idx]);
+            }
+            if (otherRows > 0) {
+                sb.append(",other:").append(otherRows);
+            }
+            span.setTag(DB_BATCH_STATEMENTS, sb.toString());
+        }
+        for (int idx = 0; idx < parameterSetCount; idx++) {
+            parameterSets[idx].decorate(span, PARAMETER_PREFIXES[idx]);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.jocean.opentracing.jdbc;
+
+import java.sql.Driver;
+
+/**
+ * everything {@link TracingDriver#connect} derives from a tracing url, parsed once per url.
+ */
+final class ConnectionDescriptor {
+
+    private final String realUrl;
+    private final String dbType;
+    private final IgnoreMatcher ignoreMatcher;
+    private final boolean withActiveSpanOnly;
+    private final Sampler sampler;
+    private final boolean captureParameters;
+    private final boolean withRawSql;
+    private final boolean traceResultSets;
+    private final boolean traceTransactions;
+    private final int nPlusOneThreshold;
+    private final Driver driver;
+    private final StatementStatistics statistics;
+
+    ConnectionDescriptor(final String realUrl,
+            final String dbType,
+            final IgnoreMatcher ignoreMatcher,
+            final boolean withActiveSpanOnly,
+            final Sampler sampler,
+            final boolean captureParameters,
+            final boolean withRawSql,
+            final boolean traceResultSets,
+            final boolean traceTransactions,
+            final int nPlusOneThreshold,
+            final Driver driver,
+            final StatementStatistics statistics) {
+        this.realUrl = realUrl;
+        this.dbType = dbType;
+        this.ignoreMatcher = ignoreMatcher;
+        this.withActiveSpanOnly = withActiveSpanOnly;
+        this.sampler = sampler;
+        this.captureParameters = captureParameters;
+        this.withRawSql = withRawSql;
+        this.traceResultSets = traceResultSets;
+        this.traceTransactions = traceTransactions;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.driver = driver;
+        this.statistics = statistics;
+    }
+
+    String realUrl() {
+        return realUrl;
+    }
+
+    String dbType() {
+        return dbType;
+    }
+
+    IgnoreMatcher ignoreMatcher() {
+        return ignoreMatcher;
+    }
+
+    boolean withActiveSpanOnly() {
+        return withActiveSpanOnly;
+    }
+
+    Sampler sampler() {
+        return sampler;
+    }
+
+    boolean captureParameters() {
+        return captureParameters;
+    }
+
+    boolean withRawSql() {
+        return withRawSql;
+    }
+
+    boolean traceResultSets() {
+        return traceResultSets;
+    }
+
+    boolean traceTransactions() {
+        return traceTransactions;
+    }
+
+    int nPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+
+    Driver driver() {
+        return driver;
+    }
+
+    StatementStatistics statistics() {
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionDescriptor [realUrl=" + realUrl + ", dbType=" + dbType + ", driver=" + driver + "]";
+    }
+}
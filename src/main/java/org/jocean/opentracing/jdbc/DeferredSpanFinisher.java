@@ -0,0 +1,277 @@
+package org.jocean.opentracing.jdbc;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+
+/**
+ * builds and finishes statement spans off the jdbc thread, once installed with
+ * {@link JdbcTiming#setDeferredFinisher}: a sampled execution only writes its start and end
+ * readings, its {@link SpanTemplate}, the parent's {@link SpanContext} (the transaction's, else the
+ * active span's) and a copy of the bound parameters into a preallocated slot of a multi-producer ring
+ * buffer, the finisher thread turns the slots into spans with explicit timestamps.
+ * <p>
+ * the statement's span is never active, fetch spans of its result sets become children of the
+ * statement's parent. batches are still traced inline; when the buffer is full the span is finished on
+ * the caller thread rather than lost, see {@link #inlineCount()}.
+ */
+public class DeferredSpanFinisher implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeferredSpanFinisher.class);
+
+    private final int mask;
+    private final int batchSize;
+    private final long idleParkNanos;
+
+    // slot fields, indexed by (sequence & mask)
+    private final Tracer[] tracers;
+    private final String[] operations;
+    private final SpanTemplate[] templates;
+    private final SpanContext[] parents;
+    // allocated by the first execution with parameters that lands in the slot
+    private final ParameterBuffer[] parameters;
+    private final boolean[] withParameters;
+    private final TracingClock[] clocks;
+    private final long[] starts;
+    private final long[] ends;
+    private final Throwable[] errors;
+    private final boolean[] failures;
+    // sequence published into each slot, -1 while never written
+    private final AtomicLongArray published;
+
+    private final AtomicLong producerSequence = new AtomicLong();
+    private volatile long consumerSequence = 0;
+
+    private final LongAdder inline = new LongAdder();
+    private final AtomicLong finished = new AtomicLong();
+
+    private final Thread finisher;
+    private volatile boolean running = true;
+
+    public DeferredSpanFinisher() {
+        this(1 << 12, 256, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * @param capacity      ring buffer slots, rounded up to a power of two
+     * @param batchSize     max spans finished per cycle before the thread looks at running again
+     * @param idleParkNanos how long the finisher sleeps once the buffer is empty
+     */
+    public DeferredSpanFinisher(final int capacity, final int batchSize, final long idleParkNanos) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity and batchSize must be positive");
+        }
+        final int size = capacity >= 1 << 20 ? 1 << 20 : capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.batchSize = batchSize;
+        this.idleParkNanos = idleParkNanos;
+        this.tracers = new Tracer[size];
+        this.operations = new String[size];
+        this.templates = new SpanTemplate[size];
+        this.parents = new SpanContext[size];
+        this.parameters = new ParameterBuffer[size];
+        this.withParameters = new boolean[size];
+        this.clocks = new TracingClock[size];
+        this.starts = new long[size];
+        this.ends = new long[size];
+        this.errors = new Throwable[size];
+        this.failures = new boolean[size];
+        this.published = new AtomicLongArray(size);
+        for (int idx = 0; idx < size; idx++) {
+            this.published.lazySet(idx, -1L);
+        }
+
+        this.finisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                finishLoop();
+            }}, "deferred-span-finisher");
+        this.finisher.setDaemon(true);
+        this.finisher.start();
+    }
+
+    /**
+     * @param params bound parameters, copied: the statement reuses them for its next execution
+     * @return false when the buffer is full, the caller finishes the span itself
+     */
+    boolean submit(final Tracer tracer,
+            final String operationName,
+            final SpanTemplate template,
+            final SpanContext parent,
+            final ParameterBuffer params,
+            final TracingClock clock,
+            final long start,
+            final long end,
+            final Throwable error,
+            final boolean failed) {
+        final long seq = claim();
+        if (seq < 0) {
+            inline.increment();
+            return false;
+        }
+        final int slot = (int) (seq & mask);
+        tracers[slot] = tracer;
+        operations[slot] = operationName;
+        templates[slot] = template;
+        parents[slot] = parent;
+        withParameters[slot] = null != params && !params.isEmpty();
+        if (withParameters[slot]) {
+            if (null == parameters[slot]) {
+                parameters[slot] = new ParameterBuffer();
+            }
+            parameters[slot].copyFrom(params);
+        }
+        clocks[slot] = clock;
+        starts[slot] = start;
+        ends[slot] = end;
+        errors[slot] = error;
+        failures[slot] = failed;
+        // release store: the slot fields above become visible to the finisher before the sequence
+        published.lazySet(slot, seq);
+        return true;
+    }
+
+    /**
+     * the span of one execution, as it would have been built inline: with explicit timestamps and,
+     * without a parent, not a child of whatever span is active on the calling thread
+     */
+    static void finish(final Tracer tracer,
+            final String operationName,
+            final SpanTemplate template,
+            final SpanContext parent,
+            final SpanDecorator decorator,
+            final TracingClock clock,
+            final long start,
+            final long end,
+            final Throwable error,
+            final boolean failed) {
+        final Tracer.SpanBuilder builder = template.spanBuilder(tracer, operationName, parent)
+            .withStartTimestamp(clock.epochMicros(start));
+        if (null == parent) {
+            builder.ignoreActiveSpan();
+        }
+        final Span span = builder.start();
+        if (null != decorator) {
+            decorator.decorate(span);
+        }
+        if (failed) {
+            JdbcTracingUtils.onError(error, span);
+        }
+        span.finish(clock.epochMicros(end));
+    }
+
+    /**
+     * @return spans finished on the caller thread because the buffer was full
+     */
+    public long inlineCount() {
+        return inline.sum();
+    }
+
+    /**
+     * @return spans finished by the finisher thread so far
+     */
+    public long finishedCount() {
+        return finished.get();
+    }
+
+    /**
+     * @return executions submitted but not yet finished
+     */
+    public int pending() {
+        return (int) (producerSequence.get() - consumerSequence);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * stops the finisher thread once the pending spans are finished, or after a second at most
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(finisher);
+        try {
+            finisher.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long claim() {
+        if (!running) {
+            return -1L;
+        }
+        for (;;) {
+            final long seq = producerSequence.get();
+            if (seq - consumerSequence > mask) {
+                return -1L;
+            }
+            if (producerSequence.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    private void finishLoop() {
+        while (running || pending() > 0) {
+            final int count = finishBatch();
+            if (0 == count) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(this, idleParkNanos);
+            }
+        }
+    }
+
+    private int finishBatch() {
+        int count = 0;
+        long seq = consumerSequence;
+        while (count < batchSize) {
+            final int slot = (int) (seq & mask);
+            if (published.get(slot) != seq) {
+                break;
+            }
+            try {
+                finish(tracers[slot], operations[slot], templates[slot], parents[slot],
+                        withParameters[slot] ? parameters[slot] : null, clocks[slot], starts[slot], ends[slot],
+                        errors[slot], failures[slot]);
+            } catch (final Exception e) {
+                LOG.warn("exception when finish {} span by {}, detail: {}", operations[slot], tracers[slot],
+                        e.toString());
+            }
+            // don't keep the last contexts, errors and parameter values of an idle buffer alive
+            parents[slot] = null;
+            errors[slot] = null;
+            if (withParameters[slot]) {
+                parameters[slot].clear();
+            }
+            seq++;
+            // the slot goes back to the producers only now, its parameters were in use up to here
+            consumerSequence = seq;
+            count++;
+        }
+        if (count > 0) {
+            finished.addAndGet(count);
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "DeferredSpanFinisher [capacity=" + capacity() + ", pending=" + pending() + ", inline="
+                + inlineCount() + "]";
+    }
+}
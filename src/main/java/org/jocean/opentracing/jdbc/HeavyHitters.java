@@ -0,0 +1,271 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the statements that took the most db time, by operation and fingerprint: a weighted Space-Saving
+ * summary (weight: duration in nanoseconds) per stripe, threads pick their stripe by id, snapshots
+ * merge the stripes.
+ * <p>
+ * memory is bounded by stripes * capacity entries. a statement that's not tracked replaces the
+ * lightest entry and inherits its weight as possible overestimation, see {@link Entry#maxErrorNanos()};
+ * statements heavier than total / capacity are always tracked.
+ * <p>
+ * {@link #INSTANCE} is fed by every statement of a {@link TracingConnection}.
+ */
+public final class HeavyHitters {
+
+    public static final HeavyHitters INSTANCE = new HeavyHitters(
+            Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1), 64);
+
+    public static final class Entry {
+        private final String operation;
+        private final NormalizedSql statement;
+        private final long totalNanos;
+        private final long executions;
+        private final long maxErrorNanos;
+
+        Entry(final String operation,
+                final NormalizedSql statement,
+                final long totalNanos,
+                final long executions,
+                final long maxErrorNanos) {
+            this.operation = operation;
+            this.statement = statement;
+            this.totalNanos = totalNanos;
+            this.executions = executions;
+            this.maxErrorNanos = maxErrorNanos;
+        }
+
+        public String operation() {
+            return operation;
+        }
+
+        public NormalizedSql statement() {
+            return statement;
+        }
+
+        /**
+         * @return db time, may be overestimated by up to {@link #maxErrorNanos()}
+         */
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return executions counted since the statement was (last) tracked
+         */
+        public long executions() {
+            return executions;
+        }
+
+        public long maxErrorNanos() {
+            return maxErrorNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + operation + " " + statement.fingerprintHex() + " totalNanos=" + totalNanos
+                    + ", executions=" + executions + ", maxErrorNanos=" + maxErrorNanos + ", sql=" + statement.sql()
+                    + "]";
+        }
+    }
+
+    private static final Comparator<Entry> HEAVIEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(final Entry o1, final Entry o2) {
+            return Long.compare(o2.totalNanos, o1.totalNanos);
+        }};
+
+    private final Stripe[] stripes;
+    private final int capacity;
+
+    /**
+     * @param stripes  power of two
+     * @param capacity statements tracked per stripe, the useful k of snapshots is well below it
+     */
+    public HeavyHitters(final int stripes, final int capacity) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("stripes must be a power of two, but " + stripes);
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, but " + capacity);
+        }
+        this.stripes = new Stripe[stripes];
+        for (int idx = 0; idx < stripes; idx++) {
+            this.stripes[idx] = new Stripe(capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param operation index of the operation, see {@link StatementStatistics#indexOf(String)}
+     */
+    void add(final int operation, final NormalizedSql statement, final long durationNanos) {
+        stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)].add(operation, statement, durationNanos);
+    }
+
+    /**
+     * @return at most {@code k} heaviest statements since creation or the last reset, heaviest first
+     */
+    public List<Entry> snapshot(final int k) {
+        return merge(k, false);
+    }
+
+    /**
+     * @return like {@link #snapshot(int)}, and starts a new interval
+     */
+    public List<Entry> snapshotAndReset(final int k) {
+        return merge(k, true);
+    }
+
+    private List<Entry> merge(final int k, final boolean reset) {
+        final List<Map<NormalizedSql, Entry>> byOperation = new ArrayList<>(StatementStatistics.OPERATIONS.length);
+        for (int idx = 0; idx < StatementStatistics.OPERATIONS.length; idx++) {
+            byOperation.add(new HashMap<NormalizedSql, Entry>());
+        }
+        for (final Stripe stripe : stripes) {
+            stripe.drainTo(byOperation, reset);
+        }
+        final List<Entry> entries = new ArrayList<>();
+        for (final Map<NormalizedSql, Entry> merged : byOperation) {
+            entries.addAll(merged.values());
+        }
+        Collections.sort(entries, HEAVIEST_FIRST);
+        return entries.size() > k ? new ArrayList<>(entries.subList(0, k)) : entries;
+    }
+
+    @Override
+    public String toString() {
+        return "HeavyHitters [stripes=" + stripes.length + ", capacity=" + capacity + "]";
+    }
+
+    private static final class Stripe {
+        // dense, [0, size), found through index; only taking over the lightest entry scans them
+        private final long[] fingerprints;
+        private final int[] operations;
+        private final NormalizedSql[] statements;
+        private final long[] weights;
+        private final long[] errors;
+        private final long[] executions;
+        // open addressing with linear probing over the entries above, slot + 1 per bucket, 0: empty
+        private final int[] index;
+        private final int indexMask;
+        private int size;
+
+        Stripe(final int capacity) {
+            this.fingerprints = new long[capacity];
+            this.operations = new int[capacity];
+            this.statements = new NormalizedSql[capacity];
+            this.weights = new long[capacity];
+            this.errors = new long[capacity];
+            this.executions = new long[capacity];
+            // at most half full
+            this.index = new int[Integer.highestOneBit(capacity) << 2];
+            this.indexMask = index.length - 1;
+        }
+
+        synchronized void add(final int operation, final NormalizedSql statement, final long weight) {
+            final long fingerprint = statement.fingerprint();
+            final int bucket = find(fingerprint, operation);
+            final int slot = index[bucket] - 1;
+            if (slot >= 0) {
+                weights[slot] += weight;
+                executions[slot]++;
+            } else if (size < fingerprints.length) {
+                put(size, operation, statement, weight, 0);
+                index[bucket] = ++size;
+            } else {
+                // Space-Saving: take over the lightest entry, its weight becomes the error bound
+                final int lightest = lightest();
+                remove(find(fingerprints[lightest], operations[lightest]));
+                put(lightest, operation, statement, weights[lightest] + weight, weights[lightest]);
+                // the removal may have shifted the bucket found above
+                index[find(fingerprint, operation)] = lightest + 1;
+            }
+        }
+
+        private int lightest() {
+            int lightest = 0;
+            for (int idx = 1; idx < size; idx++) {
+                if (weights[idx] < weights[lightest]) {
+                    lightest = idx;
+                }
+            }
+            return lightest;
+        }
+
+        // the bucket of the entry, else the empty bucket it would take
+        private int find(final long fingerprint, final int operation) {
+            int bucket = home(fingerprint, operation);
+            for (;;) {
+                final int slot = index[bucket] - 1;
+                if (slot < 0 || (fingerprints[slot] == fingerprint && operations[slot] == operation)) {
+                    return bucket;
+                }
+                bucket = (bucket + 1) & indexMask;
+            }
+        }
+
+        // backward shift deletion: no tombstones, probe chains stay as short as on insertion
+        private void remove(final int bucket) {
+            int hole = bucket;
+            int next = bucket;
+            for (;;) {
+                next = (next + 1) & indexMask;
+                final int slot = index[next] - 1;
+                if (slot < 0) {
+                    break;
+                }
+                final int home = home(fingerprints[slot], operations[slot]);
+                // the entry may move back into the hole unless its home lies between hole and next
+                if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                    index[hole] = index[next];
+                    hole = next;
+                }
+            }
+            index[hole] = 0;
+        }
+
+        private int home(final long fingerprint, final int operation) {
+            final long h = (fingerprint + operation) * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & indexMask;
+        }
+
+        private void put(final int idx,
+                final int operation,
+                final NormalizedSql statement,
+                final long weight,
+                final long error) {
+            fingerprints[idx] = statement.fingerprint();
+            operations[idx] = operation;
+            statements[idx] = statement;
+            weights[idx] = weight;
+            errors[idx] = error;
+            executions[idx] = 1;
+        }
+
+        synchronized void drainTo(final List<Map<NormalizedSql, Entry>> byOperation, final boolean reset) {
+            for (int idx = 0; idx < size; idx++) {
+                final Map<NormalizedSql, Entry> merged = byOperation.get(operations[idx]);
+                final Entry existing = merged.get(statements[idx]);
+                merged.put(statements[idx], null == existing
+                        ? new Entry(StatementStatistics.OPERATIONS[operations[idx]], statements[idx], weights[idx],
+                                executions[idx], errors[idx])
+                        : new Entry(existing.operation, existing.statement, existing.totalNanos + weights[idx],
+                                existing.executions + executions[idx], existing.maxErrorNanos + errors[idx]));
+            }
+            if (reset) {
+                Arrays.fill(statements, 0, size, null);
+                Arrays.fill(index, 0);
+                size = 0;
+            }
+        }
+    }
+}
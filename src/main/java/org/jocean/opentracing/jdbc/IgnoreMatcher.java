@@ -0,0 +1,122 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * the ignored statements of a connection, compiled once from the configured strings:
+ * <ul>
+ * <li>{@code prefix:SELECT 1} statements starting with it, leading whitespace and case aside</li>
+ * <li>{@code regex:^select 1( from dual)?$} statements the pattern finds a match in</li>
+ * <li>{@code fingerprint:5f1c0a2b3d4e6f70} statements with that normalized fingerprint, whatever
+ * their literals and whitespace, see {@link NormalizedSql#fingerprintHex()}</li>
+ * <li>anything else: statements equal to it, as before</li>
+ * </ul>
+ * exact rules are only looked up for statements of one of their lengths. compiled once per url or
+ * DataSource, statements cache the decision with their span template.
+ */
+final class IgnoreMatcher {
+
+    static final String PREFIX = "prefix:";
+    static final String REGEX = "regex:";
+    static final String FINGERPRINT = "fingerprint:";
+
+    static final IgnoreMatcher _Nothing = new IgnoreMatcher(null);
+
+    private final Set<String> exacts = new HashSet<>();
+    private final boolean[] exactLengths;
+    private final String[] prefixes;
+    private final Pattern[] patterns;
+    private final long[] fingerprints;
+    private final boolean empty;
+
+    private IgnoreMatcher(final Set<String> rules) {
+        final List<String> prefixList = new ArrayList<>();
+        final List<Pattern> patternList = new ArrayList<>();
+        final List<Long> fingerprintList = new ArrayList<>();
+        int maxLength = -1;
+        if (null != rules) {
+            for (final String rule : rules) {
+                if (null == rule) {
+                    continue;
+                }
+                if (rule.startsWith(PREFIX)) {
+                    prefixList.add(rule.substring(PREFIX.length()).trim());
+                } else if (rule.startsWith(REGEX)) {
+                    patternList.add(Pattern.compile(rule.substring(REGEX.length())));
+                } else if (rule.startsWith(FINGERPRINT)) {
+                    fingerprintList.add(Long.parseUnsignedLong(rule.substring(FINGERPRINT.length()).trim(), 16));
+                } else {
+                    exacts.add(rule);
+                    maxLength = Math.max(maxLength, rule.length());
+                }
+            }
+        }
+        this.exactLengths = new boolean[maxLength + 1];
+        for (final String exact : exacts) {
+            exactLengths[exact.length()] = true;
+        }
+        this.prefixes = prefixList.toArray(new String[0]);
+        this.patterns = patternList.toArray(new Pattern[0]);
+        this.fingerprints = new long[fingerprintList.size()];
+        for (int idx = 0; idx < fingerprints.length; idx++) {
+            fingerprints[idx] = fingerprintList.get(idx);
+        }
+        Arrays.sort(fingerprints);
+        this.empty = exacts.isEmpty() && 0 == prefixes.length && 0 == patterns.length && 0 == fingerprints.length;
+    }
+
+    /**
+     * @throws IllegalArgumentException for a malformed regex or fingerprint rule
+     */
+    static IgnoreMatcher of(final Set<String> rules) {
+        return null != rules && !rules.isEmpty() ? new IgnoreMatcher(rules) : _Nothing;
+    }
+
+    /**
+     * @return true when a rule other than a fingerprint one matches, those need the normalized sql
+     */
+    boolean matchesSql(final String sql) {
+        if (empty) {
+            return false;
+        }
+        final int length = sql.length();
+        if (length < exactLengths.length && exactLengths[length] && exacts.contains(sql)) {
+            return true;
+        }
+        for (final String prefix : prefixes) {
+            if (startsWithIgnoringCase(sql, prefix)) {
+                return true;
+            }
+        }
+        for (final Pattern pattern : patterns) {
+            if (pattern.matcher(sql).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean matchesFingerprint(final NormalizedSql normalized) {
+        return fingerprints.length > 0 && null != normalized
+                && Arrays.binarySearch(fingerprints, normalized.fingerprint()) >= 0;
+    }
+
+    private static boolean startsWithIgnoringCase(final String sql, final String prefix) {
+        int start = 0;
+        while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) {
+            start++;
+        }
+        return sql.regionMatches(true, start, prefix, 0, prefix.length());
+    }
+
+    @Override
+    public String toString() {
+        return "IgnoreMatcher [exacts=" + exacts.size() + ", prefixes=" + Arrays.toString(prefixes) + ", patterns="
+                + Arrays.toString(patterns) + ", fingerprints=" + fingerprints.length + "]";
+    }
+}
@@ -0,0 +1,93 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.opentracing.Scope;
+import io.opentracing.SpanContext;
+import io.opentracing.noop.NoopScopeManager.NoopScope;
+import io.opentracing.noop.NoopSpan;
+
+/**
+ * hot path diagnostics of the tracing statements, off unless the jvm is started with
+ * {@code -Djocean.jdbc.diagnostics=true}. the switch is read once into a constant, when off the
+ * guarded call sites are dead code to the JIT: no logger checks, no span toString.
+ * <p>
+ * when on, every {@code jocean.jdbc.diagnostics.sampleEvery}-th (default 1) statement execution
+ * leaves one line in a ring buffer of the last {@code jocean.jdbc.diagnostics.capacity} (default
+ * 1024, rounded up to a power of two) lines, see {@link #dump()}.
+ */
+public final class JdbcDiagnostics {
+
+    static final boolean ENABLED = Boolean.getBoolean("jocean.jdbc.diagnostics");
+
+    private static final int SAMPLE_EVERY = Math.max(1, Integer.getInteger("jocean.jdbc.diagnostics.sampleEvery", 1));
+
+    private static final int CAPACITY = roundUpToPowerOfTwo(
+            Integer.getInteger("jocean.jdbc.diagnostics.capacity", 1024));
+
+    private static final AtomicLong executions = new AtomicLong();
+
+    private static final AtomicLong written = new AtomicLong();
+
+    // allocated only when enabled
+    private static final AtomicReferenceArray<String> events = ENABLED ? new AtomicReferenceArray<>(CAPACITY) : null;
+
+    private JdbcDiagnostics() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @return the buffered lines, oldest first; empty when diagnostics are off
+     */
+    public static List<String> dump() {
+        if (!ENABLED) {
+            return new ArrayList<>(0);
+        }
+        final long end = written.get();
+        final List<String> lines = new ArrayList<>((int) Math.min(end, CAPACITY));
+        for (long idx = Math.max(0, end - CAPACITY); idx < end; idx++) {
+            // a slot may already hold a newer line when writers lap the reader, or none yet when in flight
+            final String line = events.get((int) (idx & (CAPACITY - 1)));
+            if (null != line) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * call sites guard with {@code if (JdbcDiagnostics.ENABLED)}
+     */
+    static void onScope(final String operationName, final SpanTemplate template, final Scope scope) {
+        if (SAMPLE_EVERY > 1 && executions.getAndIncrement() % SAMPLE_EVERY != 0) {
+            return;
+        }
+        final StringBuilder line = new StringBuilder(128)
+                .append(System.currentTimeMillis())
+                .append(' ').append(Thread.currentThread().getName())
+                .append(' ').append(operationName)
+                .append(' ').append(template.dbType())
+                .append(' ').append(template.fingerprintTag())
+                .append(' ');
+        if (scope instanceof NoopScope) {
+            line.append("noop");
+        } else if (scope.span() instanceof NoopSpan) {
+            line.append("unsampled");
+        } else {
+            final SpanContext context = scope.span().context();
+            line.append(context.toTraceId()).append('/').append(context.toSpanId());
+        }
+        events.set((int) (written.getAndIncrement() & (CAPACITY - 1)), line.toString());
+    }
+
+    private static int roundUpToPowerOfTwo(final int capacity) {
+        final int bounded = Math.max(2, Math.min(capacity, 1 << 20));
+        return Integer.highestOneBit(bounded - 1) << 1;
+    }
+}
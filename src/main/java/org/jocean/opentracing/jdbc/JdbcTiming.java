@@ -0,0 +1,52 @@
+package org.jocean.opentracing.jdbc;
+
+/**
+ * process wide timing settings of the jdbc tracing; durations are recorded in nanoseconds.
+ */
+public final class JdbcTiming {
+
+    private static volatile TracingClock clock = TracingClock._SystemClock;
+
+    private static volatile boolean explicitTimestamps;
+
+    private static volatile DeferredSpanFinisher deferredFinisher;
+
+    private JdbcTiming() {
+    }
+
+    static TracingClock clock() {
+        return clock;
+    }
+
+    static boolean explicitTimestamps() {
+        return explicitTimestamps;
+    }
+
+    static DeferredSpanFinisher deferredFinisher() {
+        return deferredFinisher;
+    }
+
+    /**
+     * @param tracingClock {@code null}: back to the system clock
+     */
+    public static void setClock(final TracingClock tracingClock) {
+        clock = null != tracingClock ? tracingClock : TracingClock._SystemClock;
+    }
+
+    /**
+     * @param explicit true: statement and transaction spans get start and finish timestamps from
+     *                 the {@link TracingClock} rather than from the tracer, spans built after the
+     *                 fact (fetches, resampled statements) always do
+     */
+    public static void setExplicitTimestamps(final boolean explicit) {
+        explicitTimestamps = explicit;
+    }
+
+    /**
+     * @param finisher builds and finishes sampled statement spans on its own thread from then on,
+     *                 {@code null}: statement spans are finished by the executing thread again
+     */
+    public static void setDeferredFinisher(final DeferredSpanFinisher finisher) {
+        deferredFinisher = finisher;
+    }
+}
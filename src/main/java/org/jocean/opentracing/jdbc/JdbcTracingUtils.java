@@ -13,115 +13,411 @@
  */
 package org.jocean.opentracing.jdbc;
 
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.jocean.opentracing.DurationRecorder;
+import org.jocean.opentracing.TracingContext;
 import org.jocean.opentracing.TracingUtil;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import io.opentracing.Scope;
 import io.opentracing.Span;
+import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.noop.NoopScopeManager.NoopScope;
+import io.opentracing.noop.NoopSpan;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 
 
 class JdbcTracingUtils {
-    private static final Logger LOG = LoggerFactory.getLogger(JdbcTracingUtils.class);
-
   static final String COMPONENT_NAME = "java-jdbc";
 
-  static Scope buildScope(final String operationName,
-      final String sql,
-      final String dbType,
-      final String dbUser,
-      final boolean withActiveSpanOnly,
-      final Set<String> ignoredStatements,
-      final Tracer tracer) {
-      return buildScope(operationName, sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements, tracer, null);
-  }
+  static final String DB_FINGERPRINT = "db.fingerprint";
+
+  static final String DB_STATEMENT_RAW = "db.statement.raw";
 
+  /**
+   * @param context as returned by {@link #resolveContext}, its tracer is never {@code null}
+   * @param parent explicit parent, e.g. the connection's transaction span, {@code null}: the active span
+   */
   static Scope buildScope(final String operationName,
-          final String sql,
-          final String dbType,
-          final String dbUser,
+          final SpanTemplate template,
           final boolean withActiveSpanOnly,
-          final Set<String> ignoredStatements,
-          final Tracer tracer,
-          final Map<String, Object> tags) {
-        final Tracer currentTracer = getNullsafeTracer(tracer);
-        if (withActiveSpanOnly && currentTracer.activeSpan() == null) {
+          final TracingContext context,
+          final Sampler sampler,
+          final SpanDecorator decorator,
+          final SpanContext parent) {
+        if (template.ignored()) {
           return NoopScope.INSTANCE;
-        } else if (ignoredStatements != null && ignoredStatements.contains(sql)) {
+        }
+        final Tracer currentTracer = context.tracer();
+        if (withActiveSpanOnly && null == parent && currentTracer.activeSpan() == null) {
           return NoopScope.INSTANCE;
         }
 
-        final Tracer.SpanBuilder spanBuilder = currentTracer.buildSpan(operationName)
-            .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT);
-
-        final Scope scope = spanBuilder.startActive(true);
-        decorate(scope.span(), sql, dbType, dbUser, tags);
+        final DurationRecorder recorder = context.durationRecorder();
 
-        LOG.debug("buildScope: tracer:{}/span:{}", currentTracer, scope.span());
+        final TracingClock clock = JdbcTiming.clock();
+        if (null != sampler && !sampler.sample(template.dbType(), operationName)) {
+            // no span now, only timing: resample() may still trace it once it's done
+            return new UnsampledScope(operationName, template, currentTracer, sampler, recorder, decorator, parent,
+                    clock);
+        }
 
-        final DurationRecorder recorder = TracingUtil.getDurationRecorder();
+        final DeferredSpanFinisher finisher = JdbcTiming.deferredFinisher();
+        if (null != finisher && (null == decorator || decorator instanceof ParameterBuffer)) {
+            final Span active = null == parent ? currentTracer.activeSpan() : null;
+            return new DeferredScope(finisher, operationName, template, currentTracer,
+                    null != parent ? parent : null != active ? active.context() : null,
+                    (ParameterBuffer) decorator, recorder, clock);
+        }
 
-        if (null != recorder) {
-            final long start = System.currentTimeMillis();
-            return new Scope() {
-                @Override
-                public void close() {
-                    scope.close();
-                    recorder.record(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS,
-                            "db.type", dbType,
-                            "db.user", null != dbUser ? dbUser : "(unknown)",
-                            "db.operation", operationName);
-                }
+        final boolean explicitTimestamps = JdbcTiming.explicitTimestamps();
+        final long start = clock.nanoTime();
+        final Tracer.SpanBuilder builder = template.spanBuilder(currentTracer, operationName, parent);
+        if (explicitTimestamps) {
+            builder.withStartTimestamp(clock.epochMicros(start));
+        }
+        // with explicit timestamps RecordingScope finishes the span
+        final Scope scope = builder.startActive(!explicitTimestamps);
+        if (null != decorator) {
+            decorator.decorate(scope.span());
+        }
 
-                @Override
-                public Span span() {
-                    return scope.span();
-                }};
+        if (null != recorder || explicitTimestamps) {
+            return new RecordingScope(scope, operationName, template, recorder, clock, start, explicitTimestamps);
         }
         else {
             return scope;
         }
       }
 
-  private static Tracer getNullsafeTracer(Tracer tracer) {
-    if (tracer == null) {
-        tracer = TracingUtil.get();
-        return tracer != null ? tracer : GlobalTracer.get();
-    }
-    return tracer;
+  static void record(final DurationRecorder recorder,
+          final long durationNanos,
+          final String operationName,
+          final SpanTemplate template,
+          final boolean failed) {
+      final boolean withError = failed && recorder.recordsErrors();
+      if (!recorder.recordsFingerprints()) {
+          if (!withError) {
+              recorder.record(durationNanos, TimeUnit.NANOSECONDS,
+                      "db.type", template.dbType(),
+                      "db.user", template.dbUserTag(),
+                      "db.operation", operationName);
+          } else {
+              recorder.record(durationNanos, TimeUnit.NANOSECONDS,
+                      "db.type", template.dbType(),
+                      "db.user", template.dbUserTag(),
+                      "db.operation", operationName,
+                      Tags.ERROR.getKey(), "true");
+          }
+      } else if (!withError) {
+          recorder.record(durationNanos, TimeUnit.NANOSECONDS,
+                  "db.type", template.dbType(),
+                  "db.user", template.dbUserTag(),
+                  "db.operation", operationName,
+                  DB_FINGERPRINT, template.fingerprintTag());
+      } else {
+          recorder.record(durationNanos, TimeUnit.NANOSECONDS,
+                  "db.type", template.dbType(),
+                  "db.user", template.dbUserTag(),
+                  "db.operation", operationName,
+                  DB_FINGERPRINT, template.fingerprintTag(),
+                  Tags.ERROR.getKey(), "true");
+      }
+  }
+
+  /**
+   * @return {@code null} when there's nothing to report the fetch to: the execution wasn't traced,
+   *         or it has neither a span nor a recorder
+   */
+  static TracingResultSet traceResultSet(final ResultSet resultSet,
+          final Statement statement,
+          final Scope statementScope,
+          final SpanTemplate template,
+          final TracingContext context) {
+      final Scope scope = statementScope instanceof CountingScope ? ((CountingScope) statementScope).scope
+              : statementScope;
+      if (null == resultSet || scope instanceof NoopScope) {
+          return null;
+      }
+      final Span span = scope.span();
+      // a deferred span doesn't exist yet, the fetches go to the statement's parent instead
+      final SpanContext parent = scope instanceof DeferredScope ? ((DeferredScope) scope).parent
+              : span instanceof NoopSpan ? null : span.context();
+      final DurationRecorder recorder = context.durationRecorder();
+      if (null == parent && null == recorder) {
+          return null;
+      }
+      return new TracingResultSet(resultSet, statement, template, parent, context.tracer(), recorder);
   }
 
-  private static void decorate(final Span span,
-      final String sql,
-      final String dbType,
-      final String dbUser,
-      final Map<String, Object> tags) {
-    Tags.COMPONENT.set(span, COMPONENT_NAME);
-    Tags.DB_STATEMENT.set(span, sql);
-    Tags.DB_TYPE.set(span, dbType);
-    if (dbUser != null) {
-      Tags.DB_USER.set(span, dbUser);
+  /**
+   * @param operation index of the operation, see {@link StatementStatistics#indexOf(String)}
+   */
+  static Scope countingScope(final Scope scope,
+          final StatementStatistics statistics,
+          final int operation,
+          final SpanTemplate template) {
+      StatementStatistics.onStarted();
+      return new CountingScope(scope, statistics, operation, template.normalized(), JdbcTiming.clock());
+  }
+
+  private static final class CountingScope implements Scope {
+      private final Scope scope;
+      private final StatementStatistics statistics;
+      private final int operation;
+      private final NormalizedSql statement;
+      private final TracingClock clock;
+      private final long start;
+      private boolean failed;
+
+      CountingScope(final Scope scope,
+              final StatementStatistics statistics,
+              final int operation,
+              final NormalizedSql statement,
+              final TracingClock clock) {
+          this.scope = scope;
+          this.statistics = statistics;
+          this.operation = operation;
+          this.statement = statement;
+          this.clock = clock;
+          this.start = clock.nanoTime();
+      }
+
+      void onError(final Throwable throwable) {
+          this.failed = true;
+          JdbcTracingUtils.onError(throwable, scope);
+      }
+
+      @Override
+      public void close() {
+          scope.close();
+          StatementStatistics.onFinished();
+          final long duration = clock.nanoTime() - start;
+          statistics.onExecuted(operation, duration, failed);
+          if (null != statement) {
+              HeavyHitters.INSTANCE.add(operation, statement, duration);
+          }
+      }
+
+      @Override
+      public Span span() {
+          return scope.span();
+      }
+  }
+
+  private static final class RecordingScope implements Scope {
+      private final Scope scope;
+      private final String operationName;
+      private final SpanTemplate template;
+      private final DurationRecorder recorder;
+      private final TracingClock clock;
+      private final long start;
+      private final boolean finishSpan;
+      private boolean failed;
+
+      /**
+       * @param recorder   {@code null}: no duration recorded
+       * @param finishSpan true: the scope doesn't finish its span, finish it with the clock's timestamp
+       */
+      RecordingScope(final Scope scope,
+              final String operationName,
+              final SpanTemplate template,
+              final DurationRecorder recorder,
+              final TracingClock clock,
+              final long start,
+              final boolean finishSpan) {
+          this.scope = scope;
+          this.operationName = operationName;
+          this.template = template;
+          this.recorder = recorder;
+          this.clock = clock;
+          this.start = start;
+          this.finishSpan = finishSpan;
+      }
+
+      void onError(final Throwable throwable) {
+          this.failed = true;
+          JdbcTracingUtils.onError(throwable, scope.span());
+      }
+
+      @Override
+      public void close() {
+          final long end = clock.nanoTime();
+          scope.close();
+          if (finishSpan) {
+              scope.span().finish(clock.epochMicros(end));
+          }
+          if (null != recorder) {
+              record(recorder, end - start, operationName, template, failed);
+          }
+      }
+
+      @Override
+      public Span span() {
+          return scope.span();
+      }
+  }
+
+  private static final class UnsampledScope implements Scope {
+      private final String operationName;
+      private final SpanTemplate template;
+      private final Tracer tracer;
+      private final Sampler sampler;
+      private final DurationRecorder recorder;
+      private final SpanDecorator decorator;
+      private final SpanContext parent;
+      private final TracingClock clock;
+      private final long start;
+      private Throwable error;
+      private boolean failed;
+
+      UnsampledScope(final String operationName,
+              final SpanTemplate template,
+              final Tracer tracer,
+              final Sampler sampler,
+              final DurationRecorder recorder,
+              final SpanDecorator decorator,
+              final SpanContext parent,
+              final TracingClock clock) {
+          this.operationName = operationName;
+          this.template = template;
+          this.tracer = tracer;
+          this.sampler = sampler;
+          this.recorder = recorder;
+          this.decorator = decorator;
+          this.parent = parent;
+          this.clock = clock;
+          this.start = clock.nanoTime();
+      }
+
+      void onError(final Throwable throwable) {
+          this.failed = true;
+          this.error = throwable;
+      }
+
+      @Override
+      public void close() {
+          final long end = clock.nanoTime();
+          if (sampler.resample(template.dbType(), operationName, template.fingerprintTag(),
+                  TimeUnit.NANOSECONDS.toMillis(end - start), failed)) {
+              // built after the fact, still child of the caller's active span, with the full detail
+              // the fast executions don't pay for
+              final Span span = template.spanBuilder(tracer, operationName, parent, true)
+                  .withStartTimestamp(clock.epochMicros(start))
+                  .start();
+              if (null != decorator) {
+                  decorator.decorate(span);
+              }
+              if (failed) {
+                  JdbcTracingUtils.onError(error, span);
+              }
+              span.finish(clock.epochMicros(end));
+          }
+          if (null != recorder) {
+              record(recorder, end - start, operationName, template, failed);
+          }
+      }
+
+      @Override
+      public Span span() {
+          return NoopSpan.INSTANCE;
+      }
+  }
+
+  private static final class DeferredScope implements Scope {
+      private final DeferredSpanFinisher finisher;
+      private final String operationName;
+      private final SpanTemplate template;
+      private final Tracer tracer;
+      private final SpanContext parent;
+      private final ParameterBuffer params;
+      private final DurationRecorder recorder;
+      private final TracingClock clock;
+      private final long start;
+      private Throwable error;
+      private boolean failed;
+
+      /**
+       * @param parent captured now: by the time the span is built the caller's active span may be gone
+       */
+      DeferredScope(final DeferredSpanFinisher finisher,
+              final String operationName,
+              final SpanTemplate template,
+              final Tracer tracer,
+              final SpanContext parent,
+              final ParameterBuffer params,
+              final DurationRecorder recorder,
+              final TracingClock clock) {
+          this.finisher = finisher;
+          this.operationName = operationName;
+          this.template = template;
+          this.tracer = tracer;
+          this.parent = parent;
+          this.params = params;
+          this.recorder = recorder;
+          this.clock = clock;
+          this.start = clock.nanoTime();
+      }
+
+      void onError(final Throwable throwable) {
+          this.failed = true;
+          this.error = throwable;
+      }
+
+      @Override
+      public void close() {
+          final long end = clock.nanoTime();
+          if (!finisher.submit(tracer, operationName, template, parent, params, clock, start, end, error, failed)) {
+              DeferredSpanFinisher.finish(tracer, operationName, template, parent, params, clock, start, end, error,
+                      failed);
+          }
+          if (null != recorder) {
+              record(recorder, end - start, operationName, template, failed);
+          }
+      }
+
+      @Override
+      public Span span() {
+          return NoopSpan.INSTANCE;
+      }
+  }
+
+  /**
+   * what a statement or transaction reports to, resolved once: an explicit tracer wins over the
+   * current context's, the GlobalTracer is the last resort; the recorder is the current context's.
+   */
+  static TracingContext resolveContext(final Tracer tracer) {
+    final TracingContext current = TracingUtil.currentContext();
+    if (null == tracer || tracer == current.tracer()) {
+      return nullsafe(current);
     }
-    if (null != tags) {
-        for (final Map.Entry<String, Object> entry : tags.entrySet()) {
-            if (entry.getValue() instanceof Boolean) {
-                span.setTag(entry.getKey(), ((Boolean)entry.getValue()).booleanValue());
-            } else if (entry.getValue() instanceof Number) {
-                span.setTag(entry.getKey(), ((Number)entry.getValue()));
-            } else {
-                span.setTag(entry.getKey(), null != entry.getValue() ? entry.getValue().toString() : "(null)");
-            }
-        }
+    return TracingContext.of(tracer, current.durationRecorder());
+  }
+
+  /**
+   * @return {@code context} with the GlobalTracer in place of a missing tracer
+   */
+  static TracingContext nullsafe(final TracingContext context) {
+    return null != context.tracer() ? context : TracingContext.of(GlobalTracer.get(), context.durationRecorder());
+  }
+
+  static void onError(final Throwable throwable, final Scope scope) {
+    if (scope instanceof CountingScope) {
+      ((CountingScope)scope).onError(throwable);
+    } else if (scope instanceof RecordingScope) {
+      ((RecordingScope)scope).onError(throwable);
+    } else if (scope instanceof UnsampledScope) {
+      ((UnsampledScope)scope).onError(throwable);
+    } else if (scope instanceof DeferredScope) {
+      ((DeferredScope)scope).onError(throwable);
+    } else {
+      onError(throwable, scope.span());
     }
   }
 
@@ -0,0 +1,91 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+/**
+ * counts statement fingerprints per parent span (the connection's transaction span, else the
+ * caller's active span) and, the moment one of them reaches the threshold, logs a single "n+1"
+ * event on that parent and tags it {@code db.n_plus_one=true}.
+ * <p>
+ * counts live in a fixed open-addressing table of {@value #CAPACITY} slots, reset whenever the
+ * parent changes; fingerprints beyond {@value #MAX_TRACKED} distinct ones per parent are not
+ * counted. like the connection, not thread safe.
+ */
+final class NPlusOneDetector {
+
+    static final String EVENT = "n+1";
+    static final String DB_N_PLUS_ONE = "db.n_plus_one";
+    static final String DB_REPETITIONS = "db.repetitions";
+
+    private static final int CAPACITY = 64;
+    private static final int MAX_TRACKED = CAPACITY * 3 / 4;
+
+    private final int threshold;
+    private final long[] fingerprints = new long[CAPACITY];
+    // 0: free slot
+    private final int[] counts = new int[CAPACITY];
+    private int size;
+    private Span owner;
+
+    /**
+     * @param threshold executions of one fingerprint under one parent that make it an n+1, at least 2
+     */
+    NPlusOneDetector(final int threshold) {
+        this.threshold = Math.max(2, threshold);
+    }
+
+    void onStatement(final Span parent, final NormalizedSql statement) {
+        if (parent != owner) {
+            reset();
+            owner = parent;
+        }
+        final long fingerprint = statement.fingerprint();
+        int idx = mix(fingerprint) & (CAPACITY - 1);
+        for (;;) {
+            final int count = counts[idx];
+            if (0 == count) {
+                if (size < MAX_TRACKED) {
+                    fingerprints[idx] = fingerprint;
+                    counts[idx] = 1;
+                    size++;
+                }
+                return;
+            }
+            if (fingerprints[idx] == fingerprint) {
+                counts[idx] = count + 1;
+                if (count + 1 == threshold) {
+                    report(parent, statement);
+                }
+                return;
+            }
+            idx = (idx + 1) & (CAPACITY - 1);
+        }
+    }
+
+    private void reset() {
+        if (size > 0) {
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+    }
+
+    private void report(final Span parent, final NormalizedSql statement) {
+        final Map<String, Object> fields = new HashMap<>(8);
+        fields.put("event", EVENT);
+        fields.put(JdbcTracingUtils.DB_FINGERPRINT, statement.fingerprintHex());
+        fields.put(Tags.DB_STATEMENT.getKey(), statement.sql());
+        fields.put(DB_REPETITIONS, threshold);
+        parent.log(fields);
+        parent.setTag(DB_N_PLUS_ONE, true);
+    }
+
+    private static int mix(final long fingerprint) {
+        final long h = fingerprint * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+}
@@ -0,0 +1,60 @@
+package org.jocean.opentracing.jdbc;
+
+/**
+ * a statement with literals stripped, IN-lists and whitespace collapsed, plus a stable
+ * 64-bit fingerprint of that text. see {@link SqlNormalizer}.
+ */
+public final class NormalizedSql {
+
+    private final String sql;
+    private final long fingerprint;
+    private final String fingerprintHex;
+
+    NormalizedSql(final String sql, final long fingerprint) {
+        this.sql = sql;
+        this.fingerprint = fingerprint;
+        this.fingerprintHex = toHex(fingerprint);
+    }
+
+    public String sql() {
+        return sql;
+    }
+
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return fingerprint as 16 lower case hex digits, computed once
+     */
+    public String fingerprintHex() {
+        return fingerprintHex;
+    }
+
+    private static String toHex(final long value) {
+        final String hex = Long.toHexString(value);
+        return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof NormalizedSql)) {
+            return false;
+        }
+        final NormalizedSql other = (NormalizedSql) obj;
+        return fingerprint == other.fingerprint && sql.equals(other.sql);
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
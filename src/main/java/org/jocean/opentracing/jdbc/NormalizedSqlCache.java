@@ -0,0 +1,100 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * bounded concurrent cache from raw to normalized sql.
+ * <p>
+ * a hit is one {@link ConcurrentHashMap#get} (String caches its hash, and re-executed statements
+ * pass the same instance, so equals() stops at the identity check). eviction is CLOCK style:
+ * hits set a reference bit, the thread that pushes the cache over its bound sweeps entries,
+ * giving referenced ones a second chance, until it's back to 90% of the bound.
+ */
+final class NormalizedSqlCache {
+
+    // statements longer than this are normalized on every call instead of pinning them in the cache
+    static final int MAX_CACHED_LENGTH = 16 * 1024;
+
+    private final int maximumSize;
+    private final boolean backslashEscapes;
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * @param backslashEscapes whether string literals of the cached statements take backslash escapes
+     */
+    NormalizedSqlCache(final int maximumSize, final boolean backslashEscapes) {
+        this.maximumSize = maximumSize;
+        this.backslashEscapes = backslashEscapes;
+        this.entries = new ConcurrentHashMap<>(Math.min(maximumSize, 1024));
+    }
+
+    NormalizedSql get(final String sql) {
+        final Entry entry = entries.get(sql);
+        if (null != entry) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            return entry.value;
+        }
+
+        final NormalizedSql normalized = SqlNormalizer.normalize(sql, backslashEscapes);
+        if (sql.length() <= MAX_CACHED_LENGTH) {
+            entries.putIfAbsent(sql, new Entry(normalized));
+            if (entries.size() > maximumSize) {
+                evict();
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * @return the cached form of sql, else sql normalized without adding it to the cache
+     */
+    NormalizedSql peek(final String sql) {
+        final Entry entry = entries.get(sql);
+        return null != entry ? entry.value : SqlNormalizer.normalize(sql, backslashEscapes);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            // someone else is already sweeping
+            return;
+        }
+        try {
+            final int target = maximumSize - maximumSize / 10;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > target) {
+                if (!iterator.hasNext()) {
+                    iterator = entries.values().iterator();
+                    if (!iterator.hasNext()) {
+                        break;
+                    }
+                }
+                final Entry entry = iterator.next();
+                if (entry.referenced) {
+                    entry.referenced = false;
+                } else {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        final NormalizedSql value;
+        volatile boolean referenced;
+
+        Entry(final NormalizedSql value) {
+            this.value = value;
+        }
+    }
+}
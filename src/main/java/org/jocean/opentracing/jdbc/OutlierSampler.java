@@ -0,0 +1,42 @@
+package org.jocean.opentracing.jdbc;
+
+/**
+ * keeps the head decision of the wrapped sampler, but always traces failed statements
+ * and, when {@code slowThresholdMillis} is not negative, statements at least that slow.
+ */
+public class OutlierSampler implements Sampler {
+
+    private final Sampler sampler;
+    private final long slowThresholdMillis;
+
+    public OutlierSampler(final Sampler sampler, final long slowThresholdMillis) {
+        this.sampler = sampler;
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    @Override
+    public boolean sample(final String dbType, final String operationName) {
+        return sampler.sample(dbType, operationName);
+    }
+
+    @Override
+    public boolean resample(final String dbType, final String operationName, final long durationMillis,
+            final boolean failed) {
+        return failed
+            || (slowThresholdMillis >= 0 && durationMillis >= slowThresholdMillis)
+            || sampler.resample(dbType, operationName, durationMillis, failed);
+    }
+
+    @Override
+    public boolean resample(final String dbType, final String operationName, final String fingerprint,
+            final long durationMillis, final boolean failed) {
+        return failed
+            || (slowThresholdMillis >= 0 && durationMillis >= slowThresholdMillis)
+            || sampler.resample(dbType, operationName, fingerprint, durationMillis, failed);
+    }
+
+    @Override
+    public String toString() {
+        return "OutlierSampler [sampler=" + sampler + ", slowThresholdMillis=" + slowThresholdMillis + "]";
+    }
+}
@@ -0,0 +1,200 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.Arrays;
+
+import io.opentracing.Span;
+
+/**
+ * bound parameters of a prepared statement, slot per parameter index with primitive
+ * storage for integral/floating/boolean values. binding never allocates once the slots
+ * have grown to the statement's parameter count, the buffer is reused across executions
+ * and only turned into tags when a span is actually decorated.
+ */
+final class ParameterBuffer implements SpanDecorator {
+
+    private static final byte EMPTY = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte OBJECT = 4;
+    private static final byte NULL = 5;
+    // objects[i] is a label, longs[i] its length, or -1 for unknown length
+    private static final byte STREAM = 6;
+
+    private static final String KEY_PREFIX = "sql.param.";
+    private static final String[] KEYS = new String[257];
+
+    static {
+        for (int idx = 0; idx < KEYS.length; idx++) {
+            KEYS[idx] = (KEY_PREFIX + idx).intern();
+        }
+    }
+
+    static String keyOf(final int parameterIndex) {
+        return parameterIndex >= 0 && parameterIndex < KEYS.length ? KEYS[parameterIndex] : KEY_PREFIX + parameterIndex;
+    }
+
+    private byte[] kinds;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    // highest bound parameter index + 1
+    private int limit;
+
+    ParameterBuffer() {
+        this(16);
+    }
+
+    ParameterBuffer(final int capacity) {
+        this.kinds = new byte[capacity];
+        this.longs = new long[capacity];
+        this.doubles = new double[capacity];
+        this.objects = new Object[capacity];
+    }
+
+    void setLong(final int parameterIndex, final long value) {
+        if (!ensureCapacity(parameterIndex)) {
+            return;
+        }
+        kinds[parameterIndex] = LONG;
+        longs[parameterIndex] = value;
+        objects[parameterIndex] = null;
+    }
+
+    void setDouble(final int parameterIndex, final double value) {
+        if (!ensureCapacity(parameterIndex)) {
+            return;
+        }
+        kinds[parameterIndex] = DOUBLE;
+        doubles[parameterIndex] = value;
+        objects[parameterIndex] = null;
+    }
+
+    void setBoolean(final int parameterIndex, final boolean value) {
+        if (!ensureCapacity(parameterIndex)) {
+            return;
+        }
+        kinds[parameterIndex] = BOOLEAN;
+        longs[parameterIndex] = value ? 1L : 0L;
+        objects[parameterIndex] = null;
+    }
+
+    void setObject(final int parameterIndex, final Object value) {
+        if (!ensureCapacity(parameterIndex)) {
+            return;
+        }
+        kinds[parameterIndex] = null != value ? OBJECT : NULL;
+        objects[parameterIndex] = value;
+    }
+
+    void setNull(final int parameterIndex) {
+        if (!ensureCapacity(parameterIndex)) {
+            return;
+        }
+        kinds[parameterIndex] = NULL;
+        objects[parameterIndex] = null;
+    }
+
+    /**
+     * @param label constant description such as "binary stream", never a computed string
+     */
+    void setStream(final int parameterIndex, final String label, final long length) {
+        if (!ensureCapacity(parameterIndex)) {
+            return;
+        }
+        kinds[parameterIndex] = STREAM;
+        objects[parameterIndex] = label;
+        longs[parameterIndex] = length;
+    }
+
+    void clear() {
+        Arrays.fill(kinds, 0, limit, EMPTY);
+        Arrays.fill(objects, 0, limit, null);
+        limit = 0;
+    }
+
+    boolean isEmpty() {
+        return 0 == limit;
+    }
+
+    /**
+     * replaces the content with other's, reusing the slots
+     */
+    void copyFrom(final ParameterBuffer other) {
+        clear();
+        if (0 == other.limit || !ensureCapacity(other.limit - 1)) {
+            return;
+        }
+        System.arraycopy(other.kinds, 0, kinds, 0, other.limit);
+        System.arraycopy(other.longs, 0, longs, 0, other.limit);
+        System.arraycopy(other.doubles, 0, doubles, 0, other.limit);
+        System.arraycopy(other.objects, 0, objects, 0, other.limit);
+    }
+
+    @Override
+    public void decorate(final Span span) {
+        decorate(span, null);
+    }
+
+    /**
+     * @param keyPrefix {@code null}: the usual "sql.param.N" keys, otherwise keyPrefix + N
+     */
+    void decorate(final Span span, final String keyPrefix) {
+        for (int idx = 0; idx < limit; idx++) {
+            if (EMPTY == kinds[idx]) {
+                continue;
+            }
+            final String key = null == keyPrefix ? keyOf(idx) : keyPrefix + idx;
+            switch (kinds[idx]) {
+            case LONG:
+                span.setTag(key, longs[idx]);
+                break;
+            case DOUBLE:
+                span.setTag(key, doubles[idx]);
+                break;
+            case BOOLEAN:
+                span.setTag(key, 0L != longs[idx]);
+                break;
+            case OBJECT:
+                setObjectTag(span, key, objects[idx]);
+                break;
+            case NULL:
+                span.setTag(key, "(null)");
+                break;
+            case STREAM:
+                span.setTag(key, longs[idx] >= 0 ? objects[idx] + "[" + longs[idx] + "]" : (String)objects[idx]);
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private static void setObjectTag(final Span span, final String key, final Object value) {
+        if (value instanceof Boolean) {
+            span.setTag(key, ((Boolean)value).booleanValue());
+        } else if (value instanceof Number) {
+            span.setTag(key, (Number)value);
+        } else {
+            span.setTag(key, value.toString());
+        }
+    }
+
+    private boolean ensureCapacity(final int parameterIndex) {
+        if (parameterIndex < 0) {
+            // the driver accepted it, nothing we could render anyway
+            return false;
+        }
+        if (parameterIndex >= kinds.length) {
+            final int capacity = Math.max(kinds.length * 2, parameterIndex + 1);
+            kinds = Arrays.copyOf(kinds, capacity);
+            longs = Arrays.copyOf(longs, capacity);
+            doubles = Arrays.copyOf(doubles, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+        if (parameterIndex >= limit) {
+            limit = parameterIndex + 1;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,31 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class ProbabilisticSampler implements Sampler {
+
+    private final double probability;
+
+    public ProbabilisticSampler(final double probability) {
+        if (probability < 0.0 || probability > 1.0) {
+            throw new IllegalArgumentException("probability must be in [0.0, 1.0], but " + probability);
+        }
+        this.probability = probability;
+    }
+
+    @Override
+    public boolean sample(final String dbType, final String operationName) {
+        return ThreadLocalRandom.current().nextDouble() < probability;
+    }
+
+    @Override
+    public boolean resample(final String dbType, final String operationName, final long durationMillis,
+            final boolean failed) {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "ProbabilisticSampler [probability=" + probability + "]";
+    }
+}
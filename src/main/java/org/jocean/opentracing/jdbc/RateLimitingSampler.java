@@ -0,0 +1,86 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * token bucket per (dbType, operation), at most {@code tracesPerSecond} spans per second
+ * for each pair, with a burst of one second's worth of tokens. time is read from
+ * {@link JdbcTiming#setClock the jdbc tracing clock}.
+ */
+public class RateLimitingSampler implements Sampler {
+
+    private final double tracesPerSecond;
+    private final long nanosPerToken;
+    private final long burstNanos;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, TokenBucket>> buckets = new ConcurrentHashMap<>();
+
+    public RateLimitingSampler(final double tracesPerSecond) {
+        if (tracesPerSecond <= 0.0) {
+            throw new IllegalArgumentException("tracesPerSecond must be positive, but " + tracesPerSecond);
+        }
+        this.tracesPerSecond = tracesPerSecond;
+        this.nanosPerToken = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / tracesPerSecond));
+        this.burstNanos = Math.max(this.nanosPerToken, TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Override
+    public boolean sample(final String dbType, final String operationName) {
+        return bucketOf(dbType, operationName).tryAcquire(JdbcTiming.clock().nanoTime());
+    }
+
+    @Override
+    public boolean resample(final String dbType, final String operationName, final long durationMillis,
+            final boolean failed) {
+        return false;
+    }
+
+    private TokenBucket bucketOf(final String dbType, final String operationName) {
+        // two lookups instead of building a "dbType/operation" key on every call
+        final String typeKey = null != dbType ? dbType : "";
+        ConcurrentMap<String, TokenBucket> byOperation = buckets.get(typeKey);
+        if (null == byOperation) {
+            final ConcurrentMap<String, TokenBucket> created = new ConcurrentHashMap<>();
+            byOperation = buckets.putIfAbsent(typeKey, created);
+            if (null == byOperation) {
+                byOperation = created;
+            }
+        }
+        TokenBucket bucket = byOperation.get(operationName);
+        if (null == bucket) {
+            final TokenBucket created = new TokenBucket();
+            bucket = byOperation.putIfAbsent(operationName, created);
+            if (null == bucket) {
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    // GCRA: a single "theoretical arrival time" instead of a token count plus refill timestamp
+    private class TokenBucket {
+        private final AtomicLong tat = new AtomicLong(JdbcTiming.clock().nanoTime() - burstNanos);
+
+        boolean tryAcquire(final long now) {
+            for (;;) {
+                final long current = tat.get();
+                final long base = Math.max(current, now - burstNanos);
+                final long next = base + nanosPerToken;
+                if (next - now > 0) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitingSampler [tracesPerSecond=" + tracesPerSecond + "]";
+    }
+}
@@ -0,0 +1,37 @@
+package org.jocean.opentracing.jdbc;
+
+/**
+ * decides which statements get a span.
+ * <p>
+ * {@link #sample} is asked before the statement runs; statements it drops skip span
+ * creation entirely but are still timed for the {@link org.jocean.opentracing.DurationRecorder}.
+ * {@link #resample} is asked after such a dropped statement finished and may still turn
+ * it into a span (e.g. for errors or slow queries); such spans carry the raw sql and the
+ * bound parameters whatever the connection's settings.
+ */
+public interface Sampler {
+    public boolean sample(final String dbType, final String operationName);
+
+    public boolean resample(final String dbType, final String operationName, final long durationMillis,
+            final boolean failed);
+
+    /**
+     * @param fingerprint hex fingerprint of the normalized statement, "(unknown)" when there's none
+     */
+    public default boolean resample(final String dbType, final String operationName, final String fingerprint,
+            final long durationMillis, final boolean failed) {
+        return resample(dbType, operationName, durationMillis, failed);
+    }
+
+    static Sampler _AlwaysSampler = new Sampler() {
+        @Override
+        public boolean sample(final String dbType, final String operationName) {
+            return true;
+        }
+
+        @Override
+        public boolean resample(final String dbType, final String operationName, final long durationMillis,
+                final boolean failed) {
+            return true;
+        }};
+}
@@ -0,0 +1,92 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * slow query mode: no statement gets a span up front, every execution is only timed, and the
+ * ones at least as slow as their threshold are traced after the fact with raw sql and bound
+ * parameters. thresholds are looked up per fingerprint, then per dbType, then the default;
+ * a negative threshold never fires. all of them can be changed at runtime, connections pick
+ * the change up with their next statement.
+ * <p>
+ * wrap it in an {@link OutlierSampler} (threshold -1) to trace failed statements as well.
+ */
+public class SlowQueryDetector implements Sampler {
+
+    private volatile long defaultThresholdMillis;
+
+    private final ConcurrentMap<String, Long> dbTypeThresholds = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Long> fingerprintThresholds = new ConcurrentHashMap<>();
+
+    public SlowQueryDetector(final long defaultThresholdMillis) {
+        this.defaultThresholdMillis = defaultThresholdMillis;
+    }
+
+    @Override
+    public boolean sample(final String dbType, final String operationName) {
+        return false;
+    }
+
+    @Override
+    public boolean resample(final String dbType, final String operationName, final long durationMillis,
+            final boolean failed) {
+        return isSlow(thresholdMillis(dbType, null), durationMillis);
+    }
+
+    @Override
+    public boolean resample(final String dbType, final String operationName, final String fingerprint,
+            final long durationMillis, final boolean failed) {
+        return isSlow(thresholdMillis(dbType, fingerprint), durationMillis);
+    }
+
+    /**
+     * @param fingerprint hex fingerprint as tagged on spans (db.fingerprint), may be {@code null}
+     */
+    public long thresholdMillis(final String dbType, final String fingerprint) {
+        if (null != fingerprint && !fingerprintThresholds.isEmpty()) {
+            final Long threshold = fingerprintThresholds.get(fingerprint);
+            if (null != threshold) {
+                return threshold.longValue();
+            }
+        }
+        if (null != dbType && !dbTypeThresholds.isEmpty()) {
+            final Long threshold = dbTypeThresholds.get(dbType);
+            if (null != threshold) {
+                return threshold.longValue();
+            }
+        }
+        return defaultThresholdMillis;
+    }
+
+    public void setDefaultThresholdMillis(final long thresholdMillis) {
+        this.defaultThresholdMillis = thresholdMillis;
+    }
+
+    public void setDbTypeThresholdMillis(final String dbType, final long thresholdMillis) {
+        dbTypeThresholds.put(dbType, thresholdMillis);
+    }
+
+    public void removeDbTypeThreshold(final String dbType) {
+        dbTypeThresholds.remove(dbType);
+    }
+
+    public void setFingerprintThresholdMillis(final String fingerprint, final long thresholdMillis) {
+        fingerprintThresholds.put(fingerprint, thresholdMillis);
+    }
+
+    public void removeFingerprintThreshold(final String fingerprint) {
+        fingerprintThresholds.remove(fingerprint);
+    }
+
+    private static boolean isSlow(final long thresholdMillis, final long durationMillis) {
+        return thresholdMillis >= 0 && durationMillis >= thresholdMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQueryDetector [defaultThresholdMillis=" + defaultThresholdMillis + ", dbTypeThresholds="
+                + dbTypeThresholds + ", fingerprintThresholds=" + fingerprintThresholds + "]";
+    }
+}
@@ -0,0 +1,12 @@
+package org.jocean.opentracing.jdbc;
+
+import io.opentracing.Span;
+
+/**
+ * per execution details added to a statement's span, applied only once a span exists: right
+ * away for sampled executions, after the fact for resampled ones.
+ */
+interface SpanDecorator {
+
+    void decorate(Span span);
+}
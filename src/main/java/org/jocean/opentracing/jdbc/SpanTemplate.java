@@ -0,0 +1,130 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.Set;
+
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.tag.Tags;
+
+/**
+ * everything about a statement's spans that doesn't change between executions: the ignore
+ * decision, the normalized sql and the static tags. built once per prepared statement, per
+ * execution only the span itself and the bound parameters remain.
+ */
+final class SpanTemplate {
+
+    static final String UNKNOWN = "(unknown)";
+
+    private final boolean ignored;
+    // db type, user and raw sql switch: the connection's, shared
+    private final StatementSettings settings;
+    private final NormalizedSql normalized;
+    private final String rawSql;
+
+    private SpanTemplate(final boolean ignored,
+            final StatementSettings settings,
+            final NormalizedSql normalized,
+            final String rawSql) {
+        this.ignored = ignored;
+        this.settings = settings;
+        this.normalized = normalized;
+        this.rawSql = rawSql;
+    }
+
+    static SpanTemplate of(final String sql,
+            final String dbType,
+            final String dbUser,
+            final Set<String> ignoredStatements,
+            final boolean withRawSql) {
+        return of(sql, new StatementSettings(dbType, dbUser, ignoredStatements, withRawSql));
+    }
+
+    static SpanTemplate of(final String sql, final StatementSettings settings) {
+        final IgnoreMatcher ignoreMatcher = settings.ignoreMatcher();
+        if (null != sql && ignoreMatcher.matchesSql(sql)) {
+            return new SpanTemplate(true, settings, null, sql);
+        }
+        final NormalizedSql normalized = SqlNormalizer.normalized(sql, settings.backslashEscapes());
+        final boolean ignored = ignoreMatcher.matchesFingerprint(normalized);
+        return new SpanTemplate(ignored,
+                settings,
+                ignored ? null : normalized,
+                // only a reference: kept for resampled spans even when not tagged by default
+                sql);
+    }
+
+    boolean ignored() {
+        return ignored;
+    }
+
+    String dbType() {
+        return settings.dbType();
+    }
+
+    String dbUser() {
+        return settings.dbUser();
+    }
+
+    /**
+     * @return db user or "(unknown)", never null
+     */
+    String dbUserTag() {
+        return settings.dbUserTag();
+    }
+
+    /**
+     * @return fingerprint hex or "(unknown)", never null
+     */
+    String fingerprintTag() {
+        return null != normalized ? normalized.fingerprintHex() : UNKNOWN;
+    }
+
+    /**
+     * @return the sql as executed, {@code null} for batches of several statements
+     */
+    String rawSql() {
+        return rawSql;
+    }
+
+    NormalizedSql normalized() {
+        return normalized;
+    }
+
+    Tracer.SpanBuilder spanBuilder(final Tracer tracer, final String operationName) {
+        return spanBuilder(tracer, operationName, null);
+    }
+
+    /**
+     * @param parent {@code null}: child of the active span, if any
+     */
+    Tracer.SpanBuilder spanBuilder(final Tracer tracer, final String operationName, final SpanContext parent) {
+        return spanBuilder(tracer, operationName, parent, settings.withRawSql());
+    }
+
+    /**
+     * @param withRawSql overrides the connection's setting, e.g. for slow queries
+     */
+    Tracer.SpanBuilder spanBuilder(final Tracer tracer,
+            final String operationName,
+            final SpanContext parent,
+            final boolean withRawSql) {
+        final Tracer.SpanBuilder builder = tracer.buildSpan(operationName)
+            .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+            .withTag(Tags.COMPONENT.getKey(), JdbcTracingUtils.COMPONENT_NAME)
+            .withTag(Tags.DB_TYPE.getKey(), settings.dbType());
+        if (null != normalized) {
+            builder.withTag(Tags.DB_STATEMENT.getKey(), normalized.sql())
+                .withTag(JdbcTracingUtils.DB_FINGERPRINT, normalized.fingerprintHex());
+        }
+        if (withRawSql && null != rawSql) {
+            builder.withTag(JdbcTracingUtils.DB_STATEMENT_RAW, rawSql);
+        }
+        if (null != settings.dbUser()) {
+            builder.withTag(Tags.DB_USER.getKey(), settings.dbUser());
+        }
+        if (null != parent) {
+            builder.asChildOf(parent);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,288 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.regex.Pattern;
+
+/**
+ * turns sql into a low cardinality form: string/numeric literals become {@code ?}, comments are
+ * dropped, whitespace is collapsed, IN-lists become {@code IN (?+)} and repeated VALUES tuples
+ * are folded into the first one. the fingerprint is a 64-bit FNV-1a hash of the result.
+ * <p>
+ * string literals follow standard sql, a quote is escaped by doubling it; a backslash escapes the
+ * next character only in E'..' literals and, with {@link #backslashEscapes(String)}, in all string
+ * literals of MySQL and MariaDB.
+ * <p>
+ * {@link #normalized(String, String)} goes through a shared bounded cache and is what the hot path
+ * uses.
+ */
+public final class SqlNormalizer {
+
+    private SqlNormalizer() {
+    }
+
+    private static final int CACHE_SIZE = 4096;
+
+    private static final NormalizedSqlCache CACHE = new NormalizedSqlCache(CACHE_SIZE, false);
+
+    private static final NormalizedSqlCache BACKSLASH_CACHE = new NormalizedSqlCache(CACHE_SIZE, true);
+
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\b(IN) ?\\(\\?(?:, \\?)*\\)");
+
+    private static final Pattern VALUES_TUPLES = Pattern.compile("(\\(\\?(?:, \\?)*\\))(?:, \\(\\?(?:, \\?)*\\))+");
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * @return the cached normalized form of standard sql, {@code null} for {@code null}
+     */
+    public static NormalizedSql normalized(final String sql) {
+        return normalized(sql, false);
+    }
+
+    /**
+     * @param dbType the db.type of the connection, e.g. "mysql"
+     * @return the cached normalized form of sql in that dialect, {@code null} for {@code null}
+     */
+    public static NormalizedSql normalized(final String sql, final String dbType) {
+        return normalized(sql, backslashEscapes(dbType));
+    }
+
+    static NormalizedSql normalized(final String sql, final boolean backslashEscapes) {
+        return null != sql ? (backslashEscapes ? BACKSLASH_CACHE : CACHE).get(sql) : null;
+    }
+
+    /**
+     * the cached form if there is one, else normalized without caching it: for statements that are
+     * likely one-off, e.g. the rows of a batch, which would only evict the useful entries
+     */
+    static NormalizedSql normalizedUncached(final String sql, final boolean backslashEscapes) {
+        return null != sql ? (backslashEscapes ? BACKSLASH_CACHE : CACHE).peek(sql) : null;
+    }
+
+    /**
+     * normalizes standard sql without touching the cache
+     */
+    public static NormalizedSql normalize(final String sql) {
+        return normalize(sql, false);
+    }
+
+    /**
+     * normalizes sql of the dialect without touching the cache
+     */
+    public static NormalizedSql normalize(final String sql, final String dbType) {
+        return normalize(sql, backslashEscapes(dbType));
+    }
+
+    static NormalizedSql normalize(final String sql, final boolean backslashEscapes) {
+        final String text = collapseLists(stripLiterals(sql, backslashEscapes));
+        return new NormalizedSql(text, fingerprint(text));
+    }
+
+    /**
+     * @return true for dialects whose string literals take backslash escapes, MySQL and MariaDB
+     *         (unless NO_BACKSLASH_ESCAPES is set on the server, which the driver can't see)
+     */
+    public static boolean backslashEscapes(final String dbType) {
+        return "mysql".equalsIgnoreCase(dbType) || "mariadb".equalsIgnoreCase(dbType);
+    }
+
+    public static long fingerprint(final CharSequence text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int idx = 0; idx < text.length(); idx++) {
+            final char c = text.charAt(idx);
+            hash ^= c & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static String collapseLists(final String text) {
+        final String collapsed = text.indexOf('(') >= 0 ? IN_LIST.matcher(text).replaceAll("$1 (?+)") : text;
+        return collapsed.indexOf("), (") >= 0 ? VALUES_TUPLES.matcher(collapsed).replaceAll("$1, ...") : collapsed;
+    }
+
+    static String stripLiterals(final String sql, final boolean backslashEscapes) {
+        final int length = sql.length();
+        final StringBuilder sb = new StringBuilder(length);
+        boolean pendingSpace = false;
+        int idx = 0;
+
+        while (idx < length) {
+            final char c = sql.charAt(idx);
+            final char next = idx + 1 < length ? sql.charAt(idx + 1) : 0;
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                idx++;
+            } else if (c == '-' && next == '-') {
+                idx = skipLineComment(sql, idx);
+                pendingSpace = true;
+            } else if (c == '/' && next == '*') {
+                idx = skipBlockComment(sql, idx);
+                pendingSpace = true;
+            } else if (c == '\'') {
+                idx = skipQuoted(sql, idx, '\'', backslashEscapes);
+                append(sb, "?", pendingSpace);
+                pendingSpace = false;
+            } else if (c == '"' || c == '`') {
+                // quoted identifier, kept as is
+                final int end = skipQuoted(sql, idx, c, false);
+                append(sb, sql.substring(idx, end), pendingSpace);
+                pendingSpace = false;
+                idx = end;
+            } else if (c == '-' && startsNumber(sql, skipWhitespace(sql, idx + 1)) && expectsOperand(sb)) {
+                // unary minus: x = -1 as x = 1, while a - 1 keeps its operator
+                idx = skipNumber(sql, skipWhitespace(sql, idx + 1));
+                append(sb, "?", pendingSpace);
+                pendingSpace = false;
+            } else if (isDigit(c) || (c == '.' && isDigit(next))) {
+                if (endsWithIdentifier(sb) && !pendingSpace) {
+                    // part of an identifier such as t1 or col_2
+                    sb.append(c);
+                    idx++;
+                } else {
+                    idx = skipNumber(sql, idx);
+                    append(sb, "?", pendingSpace);
+                    pendingSpace = false;
+                }
+            } else if (Character.isJavaIdentifierStart(c)) {
+                final int end = skipIdentifier(sql, idx);
+                if (end - idx == 1 && end < length && sql.charAt(end) == '\'' && isLiteralPrefix(c)) {
+                    // N'..', X'..', B'..', E'..', the latter takes backslash escapes everywhere
+                    idx = skipQuoted(sql, end, '\'', backslashEscapes || c == 'e' || c == 'E');
+                    append(sb, "?", pendingSpace);
+                } else {
+                    append(sb, sql.substring(idx, end), pendingSpace);
+                    idx = end;
+                }
+                pendingSpace = false;
+            } else {
+                appendPunctuation(sb, c, pendingSpace);
+                pendingSpace = false;
+                idx++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void append(final StringBuilder sb, final String token, final boolean pendingSpace) {
+        final int last = sb.length() - 1;
+        if (last >= 0) {
+            final char prev = sb.charAt(last);
+            if (prev == ',' || (pendingSpace && prev != '(')) {
+                sb.append(' ');
+            }
+        }
+        sb.append(token);
+    }
+
+    private static void appendPunctuation(final StringBuilder sb, final char c, final boolean pendingSpace) {
+        final int last = sb.length() - 1;
+        if (last >= 0) {
+            final char prev = sb.charAt(last);
+            if (c != ',' && c != ')' && (prev == ',' || (pendingSpace && prev != '('))) {
+                sb.append(' ');
+            }
+        }
+        sb.append(c);
+    }
+
+    private static boolean endsWithIdentifier(final StringBuilder sb) {
+        return sb.length() > 0 && Character.isJavaIdentifierPart(sb.charAt(sb.length() - 1))
+                && sb.charAt(sb.length() - 1) != '?';
+    }
+
+    private static int skipWhitespace(final String sql, final int start) {
+        int idx = start;
+        while (idx < sql.length() && Character.isWhitespace(sql.charAt(idx))) {
+            idx++;
+        }
+        return idx;
+    }
+
+    private static boolean startsNumber(final String sql, final int idx) {
+        if (idx >= sql.length()) {
+            return false;
+        }
+        final char c = sql.charAt(idx);
+        return isDigit(c) || (c == '.' && idx + 1 < sql.length() && isDigit(sql.charAt(idx + 1)));
+    }
+
+    // nothing yet, or an operator or opening punctuation: a value has to follow
+    private static boolean expectsOperand(final StringBuilder sb) {
+        return sb.length() == 0 || "=<>!(,+-*/%|&^~".indexOf(sb.charAt(sb.length() - 1)) >= 0;
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLiteralPrefix(final char c) {
+        switch (c) {
+        case 'n': case 'N':
+        case 'x': case 'X':
+        case 'b': case 'B':
+        case 'e': case 'E':
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static int skipLineComment(final String sql, final int start) {
+        final int end = sql.indexOf('\n', start);
+        return end >= 0 ? end + 1 : sql.length();
+    }
+
+    private static int skipBlockComment(final String sql, final int start) {
+        final int end = sql.indexOf("*/", start + 2);
+        return end >= 0 ? end + 2 : sql.length();
+    }
+
+    // returns the index after the closing quote, doubled quotes and, when enabled, backslash escapes stay inside
+    private static int skipQuoted(final String sql, final int start, final char quote,
+            final boolean backslashEscapes) {
+        int idx = start + 1;
+        while (idx < sql.length()) {
+            final char c = sql.charAt(idx);
+            if (c == '\\' && backslashEscapes) {
+                idx += 2;
+            } else if (c == quote) {
+                if (idx + 1 < sql.length() && sql.charAt(idx + 1) == quote) {
+                    idx += 2;
+                } else {
+                    return idx + 1;
+                }
+            } else {
+                idx++;
+            }
+        }
+        return sql.length();
+    }
+
+    private static int skipNumber(final String sql, final int start) {
+        int idx = start;
+        while (idx < sql.length()) {
+            final char c = sql.charAt(idx);
+            if (isDigit(c) || c == '.' || Character.isLetter(c) || c == '_') {
+                idx++;
+            } else if ((c == '+' || c == '-') && (sql.charAt(idx - 1) == 'e' || sql.charAt(idx - 1) == 'E')) {
+                idx++;
+            } else {
+                break;
+            }
+        }
+        return idx;
+    }
+
+    private static int skipIdentifier(final String sql, final int start) {
+        int idx = start + 1;
+        while (idx < sql.length() && (Character.isJavaIdentifierPart(sql.charAt(idx)))) {
+            idx++;
+        }
+        return idx;
+    }
+}
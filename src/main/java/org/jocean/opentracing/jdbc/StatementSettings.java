@@ -0,0 +1,167 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.Set;
+
+import org.jocean.opentracing.TracingContext;
+
+import io.opentracing.Tracer;
+
+/**
+ * what all statements of one connection share, built once by the connection and referenced, never
+ * copied, by its statements and their span templates. immutable.
+ * <p>
+ * db type and user are interned, the connections of a pool share one copy of them, and the user's
+ * tag value is computed once.
+ */
+final class StatementSettings {
+
+    private final String dbType;
+    private final String dbUser;
+    private final String dbUserTag;
+    private final boolean backslashEscapes;
+    private final boolean withActiveSpanOnly;
+    private final IgnoreMatcher ignoreMatcher;
+    private final Tracer tracer;
+    private final TracingContext context;
+    private final Sampler sampler;
+    private final boolean captureParameters;
+    private final boolean withRawSql;
+    private final boolean traceResultSets;
+    private final TransactionTracker transactions;
+    private final NPlusOneDetector nPlusOne;
+    private final StatementStatistics statistics;
+
+    /**
+     * settings of span templates built outside of a connection
+     */
+    StatementSettings(final String dbType,
+            final String dbUser,
+            final Set<String> ignoredStatements,
+            final boolean withRawSql) {
+        this(dbType, dbUser, false, ignoredStatements, null, null, null, false, withRawSql, true, null, null, null);
+    }
+
+    /**
+     * @param ignoredStatements rules of {@link IgnoreMatcher}, compiled here
+     * @throws IllegalArgumentException for a malformed regex or fingerprint rule
+     */
+    StatementSettings(final String dbType,
+            final String dbUser,
+            final boolean withActiveSpanOnly,
+            final Set<String> ignoredStatements,
+            final Tracer tracer,
+            final TracingContext context,
+            final Sampler sampler,
+            final boolean captureParameters,
+            final boolean withRawSql,
+            final boolean traceResultSets,
+            final TransactionTracker transactions,
+            final NPlusOneDetector nPlusOne,
+            final StatementStatistics statistics) {
+        this(dbType, dbUser, withActiveSpanOnly, IgnoreMatcher.of(ignoredStatements), tracer, context, sampler,
+                captureParameters, withRawSql, traceResultSets, transactions, nPlusOne, statistics);
+    }
+
+    /**
+     * @param ignoreMatcher     compiled by the url or DataSource, shared by all their connections
+     * @param context           explicit context, {@code null}: each statement resolves its own
+     * @param transactions      {@code null}: transactions are not traced
+     * @param nPlusOne          {@code null}: no n+1 detection
+     * @param statistics        {@code null}: statements are not counted
+     */
+    StatementSettings(final String dbType,
+            final String dbUser,
+            final boolean withActiveSpanOnly,
+            final IgnoreMatcher ignoreMatcher,
+            final Tracer tracer,
+            final TracingContext context,
+            final Sampler sampler,
+            final boolean captureParameters,
+            final boolean withRawSql,
+            final boolean traceResultSets,
+            final TransactionTracker transactions,
+            final NPlusOneDetector nPlusOne,
+            final StatementStatistics statistics) {
+        this.dbType = null != dbType ? dbType.intern() : null;
+        this.dbUser = null != dbUser ? dbUser.intern() : null;
+        this.dbUserTag = null != dbUser ? this.dbUser : SpanTemplate.UNKNOWN;
+        this.backslashEscapes = SqlNormalizer.backslashEscapes(dbType);
+        this.withActiveSpanOnly = withActiveSpanOnly;
+        this.ignoreMatcher = ignoreMatcher;
+        this.tracer = tracer;
+        this.context = context;
+        this.sampler = sampler;
+        this.captureParameters = captureParameters;
+        this.withRawSql = withRawSql;
+        this.traceResultSets = traceResultSets;
+        this.transactions = transactions;
+        this.nPlusOne = nPlusOne;
+        this.statistics = statistics;
+    }
+
+    String dbType() {
+        return dbType;
+    }
+
+    String dbUser() {
+        return dbUser;
+    }
+
+    /**
+     * @return db user or "(unknown)", never null
+     */
+    String dbUserTag() {
+        return dbUserTag;
+    }
+
+    /**
+     * @return whether the statements' string literals take backslash escapes, see {@link SqlNormalizer}
+     */
+    boolean backslashEscapes() {
+        return backslashEscapes;
+    }
+
+    boolean withActiveSpanOnly() {
+        return withActiveSpanOnly;
+    }
+
+    IgnoreMatcher ignoreMatcher() {
+        return ignoreMatcher;
+    }
+
+    Tracer tracer() {
+        return tracer;
+    }
+
+    TracingContext context() {
+        return context;
+    }
+
+    Sampler sampler() {
+        return sampler;
+    }
+
+    boolean captureParameters() {
+        return captureParameters;
+    }
+
+    boolean withRawSql() {
+        return withRawSql;
+    }
+
+    boolean traceResultSets() {
+        return traceResultSets;
+    }
+
+    TransactionTracker transactions() {
+        return transactions;
+    }
+
+    NPlusOneDetector nPlusOne() {
+        return nPlusOne;
+    }
+
+    StatementStatistics statistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,245 @@
+package org.jocean.opentracing.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * always-on counters of one connection or of all connections to one url/DataSource, kept
+ * whether or not statements are traced. a connection's statistics report to those of its url
+ * as well. counters are striped ({@link LongAdder}), many threads don't contend on them.
+ * <p>
+ * open result sets count the result sets being traced, see {@code traceResultSets}.
+ */
+public final class StatementStatistics implements StatementStatisticsMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatementStatistics.class);
+
+    static final String JMX_DOMAIN = "org.jocean.opentracing.jdbc";
+
+    static final String[] OPERATIONS = { "Query", "Update", "Execute", "Batch" };
+
+    private static final LongAdder IN_FLIGHT = new LongAdder();
+
+    private final String name;
+    private final StatementStatistics parent;
+
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder openStatements = new LongAdder();
+    private final LongAdder openResultSets = new LongAdder();
+
+    private final LongAdder[] executions = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] errors = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] totalNanos = new LongAdder[OPERATIONS.length];
+    private final LongAccumulator[] maxNanos = new LongAccumulator[OPERATIONS.length];
+
+    /**
+     * @param parent also counts everything counted here, {@code null}: none
+     */
+    StatementStatistics(final String name, final StatementStatistics parent) {
+        this.name = name;
+        this.parent = parent;
+        for (int idx = 0; idx < OPERATIONS.length; idx++) {
+            executions[idx] = new LongAdder();
+            errors[idx] = new LongAdder();
+            totalNanos[idx] = new LongAdder();
+            maxNanos[idx] = new LongAccumulator(Math::max, 0L);
+        }
+    }
+
+    /**
+     * @return -1 for operations not counted, e.g. GetConnection
+     */
+    static int indexOf(final String operationName) {
+        switch (operationName) {
+        case "Query":
+            return 0;
+        case "Update":
+            return 1;
+        case "Execute":
+            return 2;
+        case "Batch":
+            return 3;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * @return statements of all connections executing right now
+     */
+    public static long inFlight() {
+        return IN_FLIGHT.sum();
+    }
+
+    static void onStarted() {
+        IN_FLIGHT.increment();
+    }
+
+    static void onFinished() {
+        IN_FLIGHT.decrement();
+    }
+
+    void onExecuted(final int operation, final long durationNanos, final boolean failed) {
+        executions[operation].increment();
+        if (failed) {
+            errors[operation].increment();
+        }
+        totalNanos[operation].add(durationNanos);
+        maxNanos[operation].accumulate(durationNanos);
+        if (null != parent) {
+            parent.onExecuted(operation, durationNanos, failed);
+        }
+    }
+
+    void onConnectionCreated() {
+        connectionsCreated.increment();
+        if (null != parent) {
+            parent.onConnectionCreated();
+        }
+    }
+
+    void onConnectionClosed() {
+        connectionsClosed.increment();
+        if (null != parent) {
+            parent.onConnectionClosed();
+        }
+    }
+
+    void onStatementOpened() {
+        openStatements.increment();
+        if (null != parent) {
+            parent.onStatementOpened();
+        }
+    }
+
+    void onStatementClosed() {
+        openStatements.decrement();
+        if (null != parent) {
+            parent.onStatementClosed();
+        }
+    }
+
+    void onResultSetOpened() {
+        openResultSets.increment();
+        if (null != parent) {
+            parent.onResultSetOpened();
+        }
+    }
+
+    void onResultSetClosed() {
+        openResultSets.decrement();
+        if (null != parent) {
+            parent.onResultSetClosed();
+        }
+    }
+
+    /**
+     * registers this as {@code org.jocean.opentracing.jdbc:type=StatementStatistics,name=...} with
+     * the platform MBeanServer, failures are logged, not thrown
+     */
+    void registerMXBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName());
+        } catch (final Exception e) {
+            LOG.warn("exception when register statistics {} as MXBean, detail: {}", name, e.toString());
+        }
+    }
+
+    /**
+     * undoes {@link #registerMXBean()}, failures are logged, not thrown
+     */
+    void unregisterMXBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName());
+        } catch (final Exception e) {
+            LOG.warn("exception when unregister statistics {} as MXBean, detail: {}", name, e.toString());
+        }
+    }
+
+    private ObjectName objectName() throws MalformedObjectNameException {
+        return new ObjectName(JMX_DOMAIN + ":type=StatementStatistics,name=" + ObjectName.quote(name));
+    }
+
+    public StatisticsSnapshot snapshot() {
+        final Map<String, StatisticsSnapshot.Operation> operations = new LinkedHashMap<>(8);
+        for (int idx = 0; idx < OPERATIONS.length; idx++) {
+            operations.put(OPERATIONS[idx], new StatisticsSnapshot.Operation(executions[idx].sum(),
+                    errors[idx].sum(), totalNanos[idx].sum(), maxNanos[idx].get()));
+        }
+        return new StatisticsSnapshot(name, connectionsCreated.sum(), connectionsClosed.sum(), openStatements.sum(),
+                openResultSets.sum(), Collections.unmodifiableMap(operations));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getConnectionsCreated() {
+        return connectionsCreated.sum();
+    }
+
+    @Override
+    public long getConnectionsClosed() {
+        return connectionsClosed.sum();
+    }
+
+    @Override
+    public long getOpenStatements() {
+        return openStatements.sum();
+    }
+
+    @Override
+    public long getOpenResultSets() {
+        return openResultSets.sum();
+    }
+
+    @Override
+    public Map<String, Long> getExecutions() {
+        return sums(executions);
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        return sums(errors);
+    }
+
+    @Override
+    public Map<String, Long> getTotalLatencyNanos() {
+        return sums(totalNanos);
+    }
+
+    @Override
+    public Map<String, Long> getMaxLatencyNanos() {
+        final Map<String, Long> values = new LinkedHashMap<>(8);
+        for (int idx = 0; idx < OPERATIONS.length; idx++) {
+            values.put(OPERATIONS[idx], maxNanos[idx].get());
+        }
+        return values;
+    }
+
+    private static Map<String, Long> sums(final LongAdder[] adders) {
+        final Map<String, Long> values = new LinkedHashMap<>(8);
+        for (int idx = 0; idx < OPERATIONS.length; idx++) {
+            values.put(OPERATIONS[idx], adders[idx].sum());
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementStatistics [name=" + name + "]";
+    }
+}
@@ -0,0 +1,28 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.Map;
+
+/**
+ * jmx view of a {@link StatementStatistics}, per-operation attributes are keyed by operation name
+ * (Query, Update, Execute, Batch).
+ */
+public interface StatementStatisticsMXBean {
+
+    public String getName();
+
+    public long getConnectionsCreated();
+
+    public long getConnectionsClosed();
+
+    public long getOpenStatements();
+
+    public long getOpenResultSets();
+
+    public Map<String, Long> getExecutions();
+
+    public Map<String, Long> getErrors();
+
+    public Map<String, Long> getTotalLatencyNanos();
+
+    public Map<String, Long> getMaxLatencyNanos();
+}
@@ -0,0 +1,104 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.Map;
+
+/**
+ * point in time copy of a {@link StatementStatistics}, latencies in nanoseconds.
+ */
+public final class StatisticsSnapshot {
+
+    public static final class Operation {
+        private final long executions;
+        private final long errors;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Operation(final long executions, final long errors, final long totalNanos, final long maxNanos) {
+            this.executions = executions;
+            this.errors = errors;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long executions() {
+            return executions;
+        }
+
+        public long errors() {
+            return errors;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        public long maxNanos() {
+            return maxNanos;
+        }
+
+        public double meanNanos() {
+            return executions > 0 ? (double) totalNanos / executions : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return "[executions=" + executions + ", errors=" + errors + ", totalNanos=" + totalNanos
+                    + ", maxNanos=" + maxNanos + "]";
+        }
+    }
+
+    private final String name;
+    private final long connectionsCreated;
+    private final long connectionsClosed;
+    private final long openStatements;
+    private final long openResultSets;
+    private final Map<String, Operation> operations;
+
+    StatisticsSnapshot(final String name,
+            final long connectionsCreated,
+            final long connectionsClosed,
+            final long openStatements,
+            final long openResultSets,
+            final Map<String, Operation> operations) {
+        this.name = name;
+        this.connectionsCreated = connectionsCreated;
+        this.connectionsClosed = connectionsClosed;
+        this.openStatements = openStatements;
+        this.openResultSets = openResultSets;
+        this.operations = operations;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long connectionsCreated() {
+        return connectionsCreated;
+    }
+
+    public long connectionsClosed() {
+        return connectionsClosed;
+    }
+
+    public long openStatements() {
+        return openStatements;
+    }
+
+    public long openResultSets() {
+        return openResultSets;
+    }
+
+    /**
+     * @return by operation name: Query, Update, Execute, Batch
+     */
+    public Map<String, Operation> operations() {
+        return operations;
+    }
+
+    @Override
+    public String toString() {
+        return "StatisticsSnapshot [name=" + name + ", connectionsCreated=" + connectionsCreated
+                + ", connectionsClosed=" + connectionsClosed + ", openStatements=" + openStatements
+                + ", openResultSets=" + openResultSets + ", operations=" + operations + "]";
+    }
+}
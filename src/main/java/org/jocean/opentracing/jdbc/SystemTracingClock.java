@@ -0,0 +1,70 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link System#nanoTime()} for durations, timestamps from an anchor pairing a wall clock and a
+ * monotonic reading. the anchor is checked against the wall clock once a second and moved when they
+ * disagree by a millisecond or more, e.g. after NTP slewed or stepped the system clock.
+ */
+final class SystemTracingClock implements TracingClock {
+
+    private static final long RECHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // the wall clock only has millisecond resolution, moving the anchor for less would just add jitter
+    private static final long TOLERANCE_MICROS = TimeUnit.MILLISECONDS.toMicros(1);
+
+    private static final class Anchor {
+        final long micros;
+        final long nanos;
+        final long checkedNanos;
+
+        Anchor(final long micros, final long nanos, final long checkedNanos) {
+            this.micros = micros;
+            this.nanos = nanos;
+            this.checkedNanos = checkedNanos;
+        }
+
+        long epochMicros(final long nanoTime) {
+            return micros + TimeUnit.NANOSECONDS.toMicros(nanoTime - nanos);
+        }
+    }
+
+    private volatile Anchor anchor;
+
+    SystemTracingClock() {
+        final long nanos = System.nanoTime();
+        this.anchor = new Anchor(wallMicros(), nanos, nanos);
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public long epochMicros(final long nanoTime) {
+        final Anchor current = anchor;
+        return (nanoTime - current.checkedNanos < RECHECK_NANOS ? current : recheck(current)).epochMicros(nanoTime);
+    }
+
+    // racing threads each install an anchor as good as the others'
+    private Anchor recheck(final Anchor current) {
+        final long nanos = System.nanoTime();
+        final long micros = wallMicros();
+        final Anchor next = Math.abs(micros - current.epochMicros(nanos)) < TOLERANCE_MICROS
+                ? new Anchor(current.micros, current.nanos, nanos)
+                : new Anchor(micros, nanos, nanos);
+        anchor = next;
+        return next;
+    }
+
+    private static long wallMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+
+    @Override
+    public String toString() {
+        return "SystemClock";
+    }
+}
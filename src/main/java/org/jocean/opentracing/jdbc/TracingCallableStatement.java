@@ -38,8 +38,6 @@ import java.util.Set;
 public class TracingCallableStatement extends TracingPreparedStatement implements
     CallableStatement {
 
-  private final CallableStatement statement;
-
   public TracingCallableStatement(CallableStatement statement, String query, String dbType,
       String dbUser, boolean withActiveSpanOnly, Set<String> ignoredStatements) {
     this(statement, query, dbType, dbUser, withActiveSpanOnly, ignoredStatements, null);
@@ -47,582 +45,590 @@ public class TracingCallableStatement extends TracingPreparedStatement implement
 
   public TracingCallableStatement(CallableStatement statement, String query, String dbType,
       String dbUser, boolean withActiveSpanOnly, Set<String> ignoredStatements, Tracer tracer) {
-    super(statement, query, dbType, dbUser, withActiveSpanOnly, ignoredStatements, tracer);
-    this.statement = statement;
+    this(statement, query, new StatementSettings(dbType, dbUser, withActiveSpanOnly, ignoredStatements, tracer,
+        null, null, true, false, true, null, null, null));
+  }
+
+  TracingCallableStatement(CallableStatement statement, String query, StatementSettings settings) {
+    super(statement, query, settings);
   }
 
   @Override
   public void registerOutParameter(int parameterIndex, int sqlType) throws SQLException {
-    statement.registerOutParameter(parameterIndex, sqlType);
+    callableStatement().registerOutParameter(parameterIndex, sqlType);
   }
 
   @Override
   public void registerOutParameter(int parameterIndex, int sqlType, int scale) throws SQLException {
-    statement.registerOutParameter(parameterIndex, sqlType, scale);
+    callableStatement().registerOutParameter(parameterIndex, sqlType, scale);
   }
 
   @Override
   public boolean wasNull() throws SQLException {
-    return statement.wasNull();
+    return callableStatement().wasNull();
   }
 
   @Override
   public String getString(int parameterIndex) throws SQLException {
-    return statement.getString(parameterIndex);
+    return callableStatement().getString(parameterIndex);
   }
 
   @Override
   public boolean getBoolean(int parameterIndex) throws SQLException {
-    return statement.getBoolean(parameterIndex);
+    return callableStatement().getBoolean(parameterIndex);
   }
 
   @Override
   public byte getByte(int parameterIndex) throws SQLException {
-    return statement.getByte(parameterIndex);
+    return callableStatement().getByte(parameterIndex);
   }
 
   @Override
   public short getShort(int parameterIndex) throws SQLException {
-    return statement.getShort(parameterIndex);
+    return callableStatement().getShort(parameterIndex);
   }
 
   @Override
   public int getInt(int parameterIndex) throws SQLException {
-    return statement.getInt(parameterIndex);
+    return callableStatement().getInt(parameterIndex);
   }
 
   @Override
   public long getLong(int parameterIndex) throws SQLException {
-    return statement.getLong(parameterIndex);
+    return callableStatement().getLong(parameterIndex);
   }
 
   @Override
   public float getFloat(int parameterIndex) throws SQLException {
-    return statement.getFloat(parameterIndex);
+    return callableStatement().getFloat(parameterIndex);
   }
 
   @Override
   public double getDouble(int parameterIndex) throws SQLException {
-    return statement.getDouble(parameterIndex);
+    return callableStatement().getDouble(parameterIndex);
   }
 
   @Override
   @Deprecated
   public BigDecimal getBigDecimal(int parameterIndex, int scale) throws SQLException {
-    return statement.getBigDecimal(parameterIndex, scale);
+    return callableStatement().getBigDecimal(parameterIndex, scale);
   }
 
   @Override
   public byte[] getBytes(int parameterIndex) throws SQLException {
-    return statement.getBytes(parameterIndex);
+    return callableStatement().getBytes(parameterIndex);
   }
 
   @Override
   public Date getDate(int parameterIndex) throws SQLException {
-    return statement.getDate(parameterIndex);
+    return callableStatement().getDate(parameterIndex);
   }
 
   @Override
   public Time getTime(int parameterIndex) throws SQLException {
-    return statement.getTime(parameterIndex);
+    return callableStatement().getTime(parameterIndex);
   }
 
   @Override
   public Timestamp getTimestamp(int parameterIndex) throws SQLException {
-    return statement.getTimestamp(parameterIndex);
+    return callableStatement().getTimestamp(parameterIndex);
   }
 
   @Override
   public Object getObject(int parameterIndex) throws SQLException {
-    return statement.getObject(parameterIndex);
+    return callableStatement().getObject(parameterIndex);
   }
 
   @Override
   public BigDecimal getBigDecimal(int parameterIndex) throws SQLException {
-    return statement.getBigDecimal(parameterIndex);
+    return callableStatement().getBigDecimal(parameterIndex);
   }
 
   @Override
   public Object getObject(int parameterIndex, Map<String, Class<?>> map) throws SQLException {
-    return statement.getObject(parameterIndex, map);
+    return callableStatement().getObject(parameterIndex, map);
   }
 
   @Override
   public Ref getRef(int parameterIndex) throws SQLException {
-    return statement.getRef(parameterIndex);
+    return callableStatement().getRef(parameterIndex);
   }
 
   @Override
   public Blob getBlob(int parameterIndex) throws SQLException {
-    return statement.getBlob(parameterIndex);
+    return callableStatement().getBlob(parameterIndex);
   }
 
   @Override
   public Clob getClob(int parameterIndex) throws SQLException {
-    return statement.getClob(parameterIndex);
+    return callableStatement().getClob(parameterIndex);
   }
 
   @Override
   public Array getArray(int parameterIndex) throws SQLException {
-    return statement.getArray(parameterIndex);
+    return callableStatement().getArray(parameterIndex);
   }
 
   @Override
   public Date getDate(int parameterIndex, Calendar cal) throws SQLException {
-    return statement.getDate(parameterIndex, cal);
+    return callableStatement().getDate(parameterIndex, cal);
   }
 
   @Override
   public Time getTime(int parameterIndex, Calendar cal) throws SQLException {
-    return statement.getTime(parameterIndex, cal);
+    return callableStatement().getTime(parameterIndex, cal);
   }
 
   @Override
   public Timestamp getTimestamp(int parameterIndex, Calendar cal) throws SQLException {
-    return statement.getTimestamp(parameterIndex, cal);
+    return callableStatement().getTimestamp(parameterIndex, cal);
   }
 
   @Override
   public void registerOutParameter(int parameterIndex, int sqlType, String typeName)
       throws SQLException {
-    statement.registerOutParameter(parameterIndex, sqlType, typeName);
+    callableStatement().registerOutParameter(parameterIndex, sqlType, typeName);
   }
 
   @Override
   public void registerOutParameter(String parameterName, int sqlType) throws SQLException {
-    statement.registerOutParameter(parameterName, sqlType);
+    callableStatement().registerOutParameter(parameterName, sqlType);
   }
 
   @Override
   public void registerOutParameter(String parameterName, int sqlType, int scale)
       throws SQLException {
-    statement.registerOutParameter(parameterName, sqlType, scale);
+    callableStatement().registerOutParameter(parameterName, sqlType, scale);
   }
 
   @Override
   public void registerOutParameter(String parameterName, int sqlType, String typeName)
       throws SQLException {
-    statement.registerOutParameter(parameterName, sqlType, typeName);
+    callableStatement().registerOutParameter(parameterName, sqlType, typeName);
   }
 
   @Override
   public URL getURL(int parameterIndex) throws SQLException {
-    return statement.getURL(parameterIndex);
+    return callableStatement().getURL(parameterIndex);
   }
 
   @Override
   public void setURL(String parameterName, URL val) throws SQLException {
-    statement.setURL(parameterName, val);
+    callableStatement().setURL(parameterName, val);
   }
 
   @Override
   public void setNull(String parameterName, int sqlType) throws SQLException {
-    statement.setNull(parameterName, sqlType);
+    callableStatement().setNull(parameterName, sqlType);
   }
 
   @Override
   public void setBoolean(String parameterName, boolean x) throws SQLException {
-    statement.setBoolean(parameterName, x);
+    callableStatement().setBoolean(parameterName, x);
   }
 
   @Override
   public void setByte(String parameterName, byte x) throws SQLException {
-    statement.setByte(parameterName, x);
+    callableStatement().setByte(parameterName, x);
   }
 
   @Override
   public void setShort(String parameterName, short x) throws SQLException {
-    statement.setShort(parameterName, x);
+    callableStatement().setShort(parameterName, x);
   }
 
   @Override
   public void setInt(String parameterName, int x) throws SQLException {
-    statement.setInt(parameterName, x);
+    callableStatement().setInt(parameterName, x);
   }
 
   @Override
   public void setLong(String parameterName, long x) throws SQLException {
-    statement.setLong(parameterName, x);
+    callableStatement().setLong(parameterName, x);
   }
 
   @Override
   public void setFloat(String parameterName, float x) throws SQLException {
-    statement.setFloat(parameterName, x);
+    callableStatement().setFloat(parameterName, x);
   }
 
   @Override
   public void setDouble(String parameterName, double x) throws SQLException {
-    statement.setDouble(parameterName, x);
+    callableStatement().setDouble(parameterName, x);
   }
 
   @Override
   public void setBigDecimal(String parameterName, BigDecimal x) throws SQLException {
-    statement.setBigDecimal(parameterName, x);
+    callableStatement().setBigDecimal(parameterName, x);
   }
 
   @Override
   public void setString(String parameterName, String x) throws SQLException {
-    statement.setString(parameterName, x);
+    callableStatement().setString(parameterName, x);
   }
 
   @Override
   public void setBytes(String parameterName, byte[] x) throws SQLException {
-    statement.setBytes(parameterName, x);
+    callableStatement().setBytes(parameterName, x);
   }
 
   @Override
   public void setDate(String parameterName, Date x) throws SQLException {
-    statement.setDate(parameterName, x);
+    callableStatement().setDate(parameterName, x);
   }
 
   @Override
   public void setTime(String parameterName, Time x) throws SQLException {
-    statement.setTime(parameterName, x);
+    callableStatement().setTime(parameterName, x);
   }
 
   @Override
   public void setTimestamp(String parameterName, Timestamp x) throws SQLException {
-    statement.setTimestamp(parameterName, x);
+    callableStatement().setTimestamp(parameterName, x);
   }
 
   @Override
   public void setAsciiStream(String parameterName, InputStream x, int length) throws SQLException {
-    statement.setAsciiStream(parameterName, x, length);
+    callableStatement().setAsciiStream(parameterName, x, length);
   }
 
   @Override
   public void setBinaryStream(String parameterName, InputStream x, int length) throws SQLException {
-    statement.setBinaryStream(parameterName, x, length);
+    callableStatement().setBinaryStream(parameterName, x, length);
   }
 
   @Override
   public void setObject(String parameterName, Object x, int targetSqlType, int scale)
       throws SQLException {
-    statement.setObject(parameterName, x, targetSqlType, scale);
+    callableStatement().setObject(parameterName, x, targetSqlType, scale);
   }
 
   @Override
   public void setObject(String parameterName, Object x, int targetSqlType) throws SQLException {
-    statement.setObject(parameterName, x, targetSqlType);
+    callableStatement().setObject(parameterName, x, targetSqlType);
   }
 
   @Override
   public void setObject(String parameterName, Object x) throws SQLException {
-    statement.setObject(parameterName, x);
+    callableStatement().setObject(parameterName, x);
   }
 
   @Override
   public void setCharacterStream(String parameterName, Reader reader, int length)
       throws SQLException {
-    statement.setCharacterStream(parameterName, reader, length);
+    callableStatement().setCharacterStream(parameterName, reader, length);
   }
 
   @Override
   public void setDate(String parameterName, Date x, Calendar cal) throws SQLException {
-    statement.setDate(parameterName, x, cal);
+    callableStatement().setDate(parameterName, x, cal);
   }
 
   @Override
   public void setTime(String parameterName, Time x, Calendar cal) throws SQLException {
-    statement.setTime(parameterName, x, cal);
+    callableStatement().setTime(parameterName, x, cal);
   }
 
   @Override
   public void setTimestamp(String parameterName, Timestamp x, Calendar cal) throws SQLException {
-    statement.setTimestamp(parameterName, x, cal);
+    callableStatement().setTimestamp(parameterName, x, cal);
   }
 
   @Override
   public void setNull(String parameterName, int sqlType, String typeName) throws SQLException {
-    statement.setNull(parameterName, sqlType, typeName);
+    callableStatement().setNull(parameterName, sqlType, typeName);
   }
 
   @Override
   public String getString(String parameterName) throws SQLException {
-    return statement.getString(parameterName);
+    return callableStatement().getString(parameterName);
   }
 
   @Override
   public boolean getBoolean(String parameterName) throws SQLException {
-    return statement.getBoolean(parameterName);
+    return callableStatement().getBoolean(parameterName);
   }
 
   @Override
   public byte getByte(String parameterName) throws SQLException {
-    return statement.getByte(parameterName);
+    return callableStatement().getByte(parameterName);
   }
 
   @Override
   public short getShort(String parameterName) throws SQLException {
-    return statement.getShort(parameterName);
+    return callableStatement().getShort(parameterName);
   }
 
   @Override
   public int getInt(String parameterName) throws SQLException {
-    return statement.getInt(parameterName);
+    return callableStatement().getInt(parameterName);
   }
 
   @Override
   public long getLong(String parameterName) throws SQLException {
-    return statement.getLong(parameterName);
+    return callableStatement().getLong(parameterName);
   }
 
   @Override
   public float getFloat(String parameterName) throws SQLException {
-    return statement.getFloat(parameterName);
+    return callableStatement().getFloat(parameterName);
   }
 
   @Override
   public double getDouble(String parameterName) throws SQLException {
-    return statement.getDouble(parameterName);
+    return callableStatement().getDouble(parameterName);
   }
 
   @Override
   public byte[] getBytes(String parameterName) throws SQLException {
-    return statement.getBytes(parameterName);
+    return callableStatement().getBytes(parameterName);
   }
 
   @Override
   public Date getDate(String parameterName) throws SQLException {
-    return statement.getDate(parameterName);
+    return callableStatement().getDate(parameterName);
   }
 
   @Override
   public Time getTime(String parameterName) throws SQLException {
-    return statement.getTime(parameterName);
+    return callableStatement().getTime(parameterName);
   }
 
   @Override
   public Timestamp getTimestamp(String parameterName) throws SQLException {
-    return statement.getTimestamp(parameterName);
+    return callableStatement().getTimestamp(parameterName);
   }
 
   @Override
   public Object getObject(String parameterName) throws SQLException {
-    return statement.getObject(parameterName);
+    return callableStatement().getObject(parameterName);
   }
 
   @Override
   public BigDecimal getBigDecimal(String parameterName) throws SQLException {
-    return statement.getBigDecimal(parameterName);
+    return callableStatement().getBigDecimal(parameterName);
   }
 
   @Override
   public Object getObject(String parameterName, Map<String, Class<?>> map) throws SQLException {
-    return statement.getObject(parameterName, map);
+    return callableStatement().getObject(parameterName, map);
   }
 
   @Override
   public Ref getRef(String parameterName) throws SQLException {
-    return statement.getRef(parameterName);
+    return callableStatement().getRef(parameterName);
   }
 
   @Override
   public Blob getBlob(String parameterName) throws SQLException {
-    return statement.getBlob(parameterName);
+    return callableStatement().getBlob(parameterName);
   }
 
   @Override
   public Clob getClob(String parameterName) throws SQLException {
-    return statement.getClob(parameterName);
+    return callableStatement().getClob(parameterName);
   }
 
   @Override
   public Array getArray(String parameterName) throws SQLException {
-    return statement.getArray(parameterName);
+    return callableStatement().getArray(parameterName);
   }
 
   @Override
   public Date getDate(String parameterName, Calendar cal) throws SQLException {
-    return statement.getDate(parameterName, cal);
+    return callableStatement().getDate(parameterName, cal);
   }
 
   @Override
   public Time getTime(String parameterName, Calendar cal) throws SQLException {
-    return statement.getTime(parameterName, cal);
+    return callableStatement().getTime(parameterName, cal);
   }
 
   @Override
   public Timestamp getTimestamp(String parameterName, Calendar cal) throws SQLException {
-    return statement.getTimestamp(parameterName, cal);
+    return callableStatement().getTimestamp(parameterName, cal);
   }
 
   @Override
   public URL getURL(String parameterName) throws SQLException {
-    return statement.getURL(parameterName);
+    return callableStatement().getURL(parameterName);
   }
 
   @Override
   public RowId getRowId(int parameterIndex) throws SQLException {
-    return statement.getRowId(parameterIndex);
+    return callableStatement().getRowId(parameterIndex);
   }
 
   @Override
   public RowId getRowId(String parameterName) throws SQLException {
-    return statement.getRowId(parameterName);
+    return callableStatement().getRowId(parameterName);
   }
 
   @Override
   public void setRowId(String parameterName, RowId x) throws SQLException {
-    statement.setRowId(parameterName, x);
+    callableStatement().setRowId(parameterName, x);
   }
 
   @Override
   public void setNString(String parameterName, String value) throws SQLException {
-    statement.setNString(parameterName, value);
+    callableStatement().setNString(parameterName, value);
   }
 
   @Override
   public void setNCharacterStream(String parameterName, Reader value, long length)
       throws SQLException {
-    statement.setNCharacterStream(parameterName, value, length);
+    callableStatement().setNCharacterStream(parameterName, value, length);
   }
 
   @Override
   public void setNClob(String parameterName, NClob value) throws SQLException {
-    statement.setNClob(parameterName, value);
+    callableStatement().setNClob(parameterName, value);
   }
 
   @Override
   public void setClob(String parameterName, Reader reader, long length) throws SQLException {
-    statement.setClob(parameterName, reader, length);
+    callableStatement().setClob(parameterName, reader, length);
   }
 
   @Override
   public void setBlob(String parameterName, InputStream inputStream, long length)
       throws SQLException {
-    statement.setBlob(parameterName, inputStream, length);
+    callableStatement().setBlob(parameterName, inputStream, length);
   }
 
   @Override
   public void setNClob(String parameterName, Reader reader, long length) throws SQLException {
-    statement.setNClob(parameterName, reader, length);
+    callableStatement().setNClob(parameterName, reader, length);
   }
 
   @Override
   public NClob getNClob(int parameterIndex) throws SQLException {
-    return statement.getNClob(parameterIndex);
+    return callableStatement().getNClob(parameterIndex);
   }
 
   @Override
   public NClob getNClob(String parameterName) throws SQLException {
-    return statement.getNClob(parameterName);
+    return callableStatement().getNClob(parameterName);
   }
 
   @Override
   public void setSQLXML(String parameterName, SQLXML xmlObject) throws SQLException {
-    statement.setSQLXML(parameterName, xmlObject);
+    callableStatement().setSQLXML(parameterName, xmlObject);
   }
 
   @Override
   public SQLXML getSQLXML(int parameterIndex) throws SQLException {
-    return statement.getSQLXML(parameterIndex);
+    return callableStatement().getSQLXML(parameterIndex);
   }
 
   @Override
   public SQLXML getSQLXML(String parameterName) throws SQLException {
-    return statement.getSQLXML(parameterName);
+    return callableStatement().getSQLXML(parameterName);
   }
 
   @Override
   public String getNString(int parameterIndex) throws SQLException {
-    return statement.getNString(parameterIndex);
+    return callableStatement().getNString(parameterIndex);
   }
 
   @Override
   public String getNString(String parameterName) throws SQLException {
-    return statement.getNString(parameterName);
+    return callableStatement().getNString(parameterName);
   }
 
   @Override
   public Reader getNCharacterStream(int parameterIndex) throws SQLException {
-    return statement.getNCharacterStream(parameterIndex);
+    return callableStatement().getNCharacterStream(parameterIndex);
   }
 
   @Override
   public Reader getNCharacterStream(String parameterName) throws SQLException {
-    return statement.getNCharacterStream(parameterName);
+    return callableStatement().getNCharacterStream(parameterName);
   }
 
   @Override
   public Reader getCharacterStream(int parameterIndex) throws SQLException {
-    return statement.getCharacterStream(parameterIndex);
+    return callableStatement().getCharacterStream(parameterIndex);
   }
 
   @Override
   public Reader getCharacterStream(String parameterName) throws SQLException {
-    return statement.getCharacterStream(parameterName);
+    return callableStatement().getCharacterStream(parameterName);
   }
 
   @Override
   public void setBlob(String parameterName, Blob x) throws SQLException {
-    statement.setBlob(parameterName, x);
+    callableStatement().setBlob(parameterName, x);
   }
 
   @Override
   public void setClob(String parameterName, Clob x) throws SQLException {
-    statement.setClob(parameterName, x);
+    callableStatement().setClob(parameterName, x);
   }
 
   @Override
   public void setAsciiStream(String parameterName, InputStream x, long length) throws SQLException {
-    statement.setAsciiStream(parameterName, x, length);
+    callableStatement().setAsciiStream(parameterName, x, length);
   }
 
   @Override
   public void setBinaryStream(String parameterName, InputStream x, long length)
       throws SQLException {
-    statement.setBinaryStream(parameterName, x, length);
+    callableStatement().setBinaryStream(parameterName, x, length);
   }
 
   @Override
   public void setCharacterStream(String parameterName, Reader reader, long length)
       throws SQLException {
-    statement.setCharacterStream(parameterName, reader, length);
+    callableStatement().setCharacterStream(parameterName, reader, length);
   }
 
   @Override
   public void setAsciiStream(String parameterName, InputStream x) throws SQLException {
-    statement.setAsciiStream(parameterName, x);
+    callableStatement().setAsciiStream(parameterName, x);
   }
 
   @Override
   public void setBinaryStream(String parameterName, InputStream x) throws SQLException {
-    statement.setBinaryStream(parameterName, x);
+    callableStatement().setBinaryStream(parameterName, x);
   }
 
   @Override
   public void setCharacterStream(String parameterName, Reader reader) throws SQLException {
-    statement.setCharacterStream(parameterName, reader);
+    callableStatement().setCharacterStream(parameterName, reader);
   }
 
   @Override
   public void setNCharacterStream(String parameterName, Reader value) throws SQLException {
-    statement.setNCharacterStream(parameterName, value);
+    callableStatement().setNCharacterStream(parameterName, value);
   }
 
   @Override
   public void setClob(String parameterName, Reader reader) throws SQLException {
-    statement.setClob(parameterName, reader);
+    callableStatement().setClob(parameterName, reader);
   }
 
   @Override
   public void setBlob(String parameterName, InputStream inputStream) throws SQLException {
-    statement.setBlob(parameterName, inputStream);
+    callableStatement().setBlob(parameterName, inputStream);
   }
 
   @Override
   public void setNClob(String parameterName, Reader reader) throws SQLException {
-    statement.setNClob(parameterName, reader);
+    callableStatement().setNClob(parameterName, reader);
   }
 
   @Override
   public <T> T getObject(int parameterIndex, Class<T> type) throws SQLException {
-    return statement.getObject(parameterIndex, type);
+    return callableStatement().getObject(parameterIndex, type);
   }
 
   @Override
   public <T> T getObject(String parameterName, Class<T> type) throws SQLException {
-    return statement.getObject(parameterName, type);
+    return callableStatement().getObject(parameterName, type);
+  }
+
+  private CallableStatement callableStatement() {
+    return (CallableStatement) statement;
   }
 }
@@ -0,0 +1,24 @@
+package org.jocean.opentracing.jdbc;
+
+/**
+ * time source of the jdbc tracing: durations are differences of {@link #nanoTime()}, span
+ * timestamps are derived from the same readings, so durations never depend on wall clock
+ * adjustments. install another one with {@link JdbcTiming#setClock}.
+ */
+public interface TracingClock {
+
+    /**
+     * @return monotonic reading, only meaningful relative to other readings
+     */
+    public long nanoTime();
+
+    /**
+     * @return microseconds since the epoch for a {@link #nanoTime()} reading, as spans expect them
+     */
+    public long epochMicros(final long nanoTime);
+
+    /**
+     * follows the wall clock, corrections included, within a millisecond and a second of them
+     */
+    static TracingClock _SystemClock = new SystemTracingClock();
+}
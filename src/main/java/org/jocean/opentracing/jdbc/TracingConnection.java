@@ -30,19 +30,26 @@ import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.Executor;
 
+import org.jocean.opentracing.TracingContext;
+import org.jocean.opentracing.TracingUtil;
+
 public class TracingConnection implements Connection {
 
   private final Connection connection;
-  private final String dbType;
-  private final String dbUser;
-  private final boolean withActiveSpanOnly;
-  private final Set<String> ignoredStatements;
-  private final Tracer tracer;
+  private final TransactionTracker transactions;
+  // handed to every statement
+  private final StatementSettings settings;
+  // counted open in the statistics, settled when the connection closes them implicitly
+  private final Set<TracingStatement> openStatements =
+      Collections.newSetFromMap(new IdentityHashMap<TracingStatement, Boolean>());
+  private boolean closed;
 
   public TracingConnection(Connection connection, String dbType, String dbUser,
       boolean withActiveSpanOnly, Set<String> ignoredStatements) {
@@ -51,30 +58,182 @@ public class TracingConnection implements Connection {
 
   public TracingConnection(Connection connection, String dbType, String dbUser,
       boolean withActiveSpanOnly, Set<String> ignoredStatements, Tracer tracer) {
+    this(connection, dbType, dbUser, withActiveSpanOnly, IgnoreMatcher.of(ignoredStatements), tracer, null, null,
+        true, false, true, false, 0, null);
+  }
+
+  /**
+   * @return builder of a connection with settings past those of the constructors
+   */
+  public static Builder builder(Connection connection, String dbType, String dbUser) {
+    return new Builder(connection, dbType, dbUser);
+  }
+
+  /**
+   * @param ignoreMatcher compiled before the real connection was opened, a malformed rule fails there
+   * @param parent        statistics of the url or DataSource this connection is counted into as well,
+   *                      {@code null}: none
+   */
+  TracingConnection(Connection connection, String dbType, String dbUser,
+      boolean withActiveSpanOnly, IgnoreMatcher ignoreMatcher, Tracer tracer, TracingContext context,
+      Sampler sampler, boolean captureParameters, boolean withRawSql, boolean traceResultSets,
+      boolean traceTransactions, int nPlusOneThreshold, StatementStatistics parent) {
     this.connection = connection;
-    this.dbType = dbType;
-    this.dbUser = dbUser;
-    this.withActiveSpanOnly = withActiveSpanOnly;
-    this.ignoredStatements = ignoredStatements;
-    this.tracer = tracer;
+    final TracingContext fixedContext = null != context ? JdbcTracingUtils.nullsafe(context) : null;
+    this.transactions = traceTransactions
+        ? new TransactionTracker(connection, dbType, dbUser, withActiveSpanOnly, tracer, fixedContext, sampler)
+        : null;
+    final StatementStatistics statistics =
+        new StatementStatistics(dbType + "@" + Integer.toHexString(System.identityHashCode(this)), parent);
+    statistics.onConnectionCreated();
+    this.settings = new StatementSettings(dbType, dbUser, withActiveSpanOnly, ignoreMatcher, tracer, fixedContext,
+        sampler, captureParameters, withRawSql, traceResultSets, transactions,
+        nPlusOneThreshold > 0 ? new NPlusOneDetector(nPlusOneThreshold) : null, statistics);
+  }
+
+  /**
+   * @return executions, errors and latencies of this connection's statements so far
+   */
+  public StatisticsSnapshot statistics() {
+    return settings.statistics().snapshot();
+  }
+
+  private <T extends TracingStatement> T tracked(T statement) {
+    settings.statistics().onStatementOpened();
+    statement.owner = this;
+    synchronized (openStatements) {
+      openStatements.add(statement);
+    }
+    return statement;
+  }
+
+  void untrack(TracingStatement statement) {
+    synchronized (openStatements) {
+      openStatements.remove(statement);
+    }
+  }
+
+  public static final class Builder {
+
+    private final Connection connection;
+    private final String dbType;
+    private final String dbUser;
+    private boolean withActiveSpanOnly;
+    private Set<String> ignoredStatements;
+    private Tracer tracer;
+    private TracingContext context;
+    private Sampler sampler;
+    private boolean captureParameters = true;
+    private boolean withRawSql;
+    private boolean traceResultSets = true;
+    private boolean traceTransactions;
+    private int nPlusOneThreshold;
+
+    private Builder(Connection connection, String dbType, String dbUser) {
+      this.connection = connection;
+      this.dbType = dbType;
+      this.dbUser = dbUser;
+    }
+
+    public Builder withActiveSpanOnly(boolean withActiveSpanOnly) {
+      this.withActiveSpanOnly = withActiveSpanOnly;
+      return this;
+    }
+
+    /**
+     * @param ignoredStatements rules of {@link IgnoreMatcher}
+     */
+    public Builder ignoredStatements(Set<String> ignoredStatements) {
+      this.ignoredStatements = ignoredStatements;
+      return this;
+    }
+
+    public Builder tracer(Tracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
+    /**
+     * @param context what all statements of this connection report to, instead of each of them resolving
+     *                the current one with {@link TracingUtil#currentContext()}, e.g. when the connection is
+     *                handed across threads
+     */
+    public Builder context(TracingContext context) {
+      this.context = context;
+      return this;
+    }
+
+    public Builder sampler(Sampler sampler) {
+      this.sampler = sampler;
+      return this;
+    }
+
+    /**
+     * @param captureParameters false: prepared statements don't record bound parameters as span tags
+     */
+    public Builder captureParameters(boolean captureParameters) {
+      this.captureParameters = captureParameters;
+      return this;
+    }
+
+    /**
+     * @param withRawSql true: spans carry the raw sql as db.statement.raw next to the normalized db.statement
+     */
+    public Builder withRawSql(boolean withRawSql) {
+      this.withRawSql = withRawSql;
+      return this;
+    }
+
+    /**
+     * @param traceResultSets false: result sets are returned unwrapped, fetch time and rows are not reported
+     */
+    public Builder traceResultSets(boolean traceResultSets) {
+      this.traceResultSets = traceResultSets;
+      return this;
+    }
+
+    /**
+     * @param traceTransactions true: statements run while autocommit is off are children of a "Transaction"
+     *                          span, which ends with commit/rollback and carries statement count, rows
+     *                          affected and commit latency
+     */
+    public Builder traceTransactions(boolean traceTransactions) {
+      this.traceTransactions = traceTransactions;
+      return this;
+    }
+
+    /**
+     * @param nPlusOneThreshold executions of one statement under one parent span (transaction or active span)
+     *                          that get the parent an "n+1" event, 0 or less: no detection
+     */
+    public Builder nPlusOneThreshold(int nPlusOneThreshold) {
+      this.nPlusOneThreshold = nPlusOneThreshold;
+      return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException for a malformed regex or fingerprint rule of the ignored statements
+     */
+    public TracingConnection build() {
+      return new TracingConnection(connection, dbType, dbUser, withActiveSpanOnly,
+          IgnoreMatcher.of(ignoredStatements), tracer, context, sampler, captureParameters, withRawSql,
+          traceResultSets, traceTransactions, nPlusOneThreshold, null);
+    }
   }
 
   @Override
   public Statement createStatement() throws SQLException {
-    return new TracingStatement(connection.createStatement(), dbType, dbUser, withActiveSpanOnly,
-        ignoredStatements, tracer);
+    return tracked(new TracingStatement(connection.createStatement(), null, settings));
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql) throws SQLException {
-    return new TracingPreparedStatement(connection.prepareStatement(sql), sql, dbType, dbUser,
-        withActiveSpanOnly, ignoredStatements, tracer);
+    return tracked(new TracingPreparedStatement(connection.prepareStatement(sql), sql, settings));
   }
 
   @Override
   public CallableStatement prepareCall(String sql) throws SQLException {
-    return new TracingCallableStatement(connection.prepareCall(sql), sql, dbType, dbUser,
-        withActiveSpanOnly, ignoredStatements);
+    return tracked(new TracingCallableStatement(connection.prepareCall(sql), sql, settings));
   }
 
   @Override
@@ -85,6 +244,13 @@ public class TracingConnection implements Connection {
   @Override
   public void setAutoCommit(boolean autoCommit) throws SQLException {
     connection.setAutoCommit(autoCommit);
+    if (null != transactions) {
+      if (autoCommit) {
+        // enabling autocommit commits the pending transaction
+        transactions.end("AutoCommit");
+      }
+      transactions.onAutoCommit(autoCommit);
+    }
   }
 
   @Override
@@ -94,17 +260,63 @@ public class TracingConnection implements Connection {
 
   @Override
   public void commit() throws SQLException {
-    connection.commit();
+    if (null == transactions) {
+      connection.commit();
+      return;
+    }
+    final long start = JdbcTiming.clock().nanoTime();
+    Throwable failure = null;
+    try {
+      connection.commit();
+    } catch (final Exception e) {
+      failure = e;
+      throw e;
+    } finally {
+      transactions.end(TransactionTracker.COMMIT, start, failure);
+    }
   }
 
   @Override
   public void rollback() throws SQLException {
-    connection.rollback();
+    if (null == transactions) {
+      connection.rollback();
+      return;
+    }
+    final long start = JdbcTiming.clock().nanoTime();
+    Throwable failure = null;
+    try {
+      connection.rollback();
+    } catch (final Exception e) {
+      failure = e;
+      throw e;
+    } finally {
+      transactions.end(TransactionTracker.ROLLBACK, start, failure);
+    }
   }
 
   @Override
   public void close() throws SQLException {
-    connection.close();
+    try {
+      connection.close();
+    } finally {
+      if (null != transactions) {
+        // rolled back or committed by the driver, depending on the vendor
+        transactions.end("Close");
+      }
+      if (!closed) {
+        closed = true;
+        // closing the connection closes its statements and their result sets as well
+        final TracingStatement[] statements;
+        synchronized (openStatements) {
+          statements = openStatements.toArray(new TracingStatement[0]);
+          openStatements.clear();
+        }
+        for (TracingStatement statement : statements) {
+          statement.settle();
+        }
+        settings.statistics().onConnectionClosed();
+      }
+    }
   }
 
   @Override
@@ -160,24 +372,22 @@ public class TracingConnection implements Connection {
   @Override
   public Statement createStatement(int resultSetType, int resultSetConcurrency)
       throws SQLException {
-    return new TracingStatement(connection.createStatement(resultSetType, resultSetConcurrency),
-        dbType, dbUser, withActiveSpanOnly, ignoredStatements);
+    return tracked(new TracingStatement(connection.createStatement(resultSetType, resultSetConcurrency), null,
+        settings));
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
       throws SQLException {
-    return new TracingPreparedStatement(
-        connection.prepareStatement(sql, resultSetType, resultSetConcurrency), sql, dbType, dbUser,
-        withActiveSpanOnly, ignoredStatements, tracer);
+    return tracked(new TracingPreparedStatement(
+        connection.prepareStatement(sql, resultSetType, resultSetConcurrency), sql, settings));
   }
 
   @Override
   public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
       throws SQLException {
-    return new TracingCallableStatement(
-        connection.prepareCall(sql, resultSetType, resultSetConcurrency), sql, dbType, dbUser,
-        withActiveSpanOnly, ignoredStatements);
+    return tracked(new TracingCallableStatement(
+        connection.prepareCall(sql, resultSetType, resultSetConcurrency), sql, settings));
   }
 
   @Override
@@ -202,64 +412,72 @@ public class TracingConnection implements Connection {
 
   @Override
   public Savepoint setSavepoint() throws SQLException {
-    return connection.setSavepoint();
+    final Savepoint savepoint = connection.setSavepoint();
+    onSavepointEvent("savepoint");
+    return savepoint;
   }
 
   @Override
   public Savepoint setSavepoint(String name) throws SQLException {
-    return connection.setSavepoint(name);
+    final Savepoint savepoint = connection.setSavepoint(name);
+    onSavepointEvent("savepoint");
+    return savepoint;
   }
 
   @Override
   public void rollback(Savepoint savepoint) throws SQLException {
     connection.rollback(savepoint);
+    onSavepointEvent("rollback to savepoint");
   }
 
   @Override
   public void releaseSavepoint(Savepoint savepoint) throws SQLException {
     connection.releaseSavepoint(savepoint);
+    onSavepointEvent("release savepoint");
+  }
+
+  private void onSavepointEvent(String event) {
+    if (null != transactions) {
+      transactions.onEvent(event);
+    }
   }
 
   @Override
   public Statement createStatement(int resultSetType, int resultSetConcurrency,
       int resultSetHoldability) throws SQLException {
-    return new TracingStatement(
-        connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability),
-        dbType, dbUser, withActiveSpanOnly, ignoredStatements);
+    return tracked(new TracingStatement(
+        connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability), null, settings));
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
       int resultSetHoldability) throws SQLException {
-    return new TracingPreparedStatement(
+    return tracked(new TracingPreparedStatement(
         connection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability),
-        sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements, tracer);
+        sql, settings));
   }
 
   @Override
   public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
       int resultSetHoldability) throws SQLException {
-    return new TracingCallableStatement(
-        connection.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability), sql,
-        dbType, dbUser, withActiveSpanOnly, ignoredStatements, tracer);
+    return tracked(new TracingCallableStatement(
+        connection.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability), sql, settings));
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
-    return new TracingPreparedStatement(connection.prepareStatement(sql, autoGeneratedKeys), sql,
-        dbType, dbUser, withActiveSpanOnly, ignoredStatements, tracer);
+    return tracked(new TracingPreparedStatement(connection.prepareStatement(sql, autoGeneratedKeys), sql,
+        settings));
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
-    return new TracingPreparedStatement(connection.prepareStatement(sql, columnIndexes), sql,
-        dbType, dbUser, withActiveSpanOnly, ignoredStatements, tracer);
+    return tracked(new TracingPreparedStatement(connection.prepareStatement(sql, columnIndexes), sql, settings));
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
-    return new TracingPreparedStatement(connection.prepareStatement(sql, columnNames), sql, dbType,
-        dbUser, withActiveSpanOnly, ignoredStatements, tracer);
+    return tracked(new TracingPreparedStatement(connection.prepareStatement(sql, columnNames), sql, settings));
   }
 
   @Override
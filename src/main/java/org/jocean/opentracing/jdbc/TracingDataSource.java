@@ -0,0 +1,261 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.jocean.opentracing.jdbc.JdbcTracingUtils.buildScope;
+
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.jocean.opentracing.DurationRecorder;
+import org.jocean.opentracing.TracingContext;
+
+import io.opentracing.Scope;
+import io.opentracing.Tracer;
+import io.opentracing.noop.NoopScopeManager.NoopScope;
+
+/**
+ * hands out {@link TracingConnection}s of any (pooled) DataSource. the time spent in
+ * {@code getConnection}, i.e. the pool wait, is recorded as a "GetConnection" duration and,
+ * with {@link #setTraceAcquisition(boolean)}, as a "GetConnection" span.
+ * <p>
+ * the setters mirror the tracing url parameters of {@link TracingDriver}, they may be called from
+ * any thread and apply to connections taken afterwards. unless {@link #setContext(TracingContext)} is given, the tracing
+ * context is resolved once per getConnection, on the calling thread, and kept by that connection.
+ */
+public class TracingDataSource implements DataSource, Closeable {
+
+  static final String ACQUIRE_OPERATION = "GetConnection";
+
+  private final DataSource dataSource;
+  private final String dbType;
+  // set from any thread, read by every getConnection
+  private volatile String dbUser;
+  private volatile boolean withActiveSpanOnly;
+  private volatile IgnoreMatcher ignoreMatcher = IgnoreMatcher._Nothing;
+  private volatile Tracer tracer;
+  private volatile TracingContext context;
+  private volatile Sampler sampler;
+  private volatile boolean captureParameters = true;
+  private volatile boolean withRawSql;
+  private volatile boolean traceResultSets = true;
+  private volatile boolean traceAcquisition;
+  private volatile boolean traceTransactions;
+  private volatile int nPlusOneThreshold;
+  // "GetConnection" template of dbUser, rebuilt by setDbUser only
+  private volatile SpanTemplate acquireTemplate;
+  private final StatementStatistics statistics;
+  private final AtomicBoolean registered = new AtomicBoolean();
+
+  /**
+   * @param dbType db.type of the spans, e.g. "mysql"
+   */
+  public TracingDataSource(final DataSource dataSource, final String dbType) {
+    this.dataSource = dataSource;
+    this.dbType = dbType;
+    this.statistics = new StatementStatistics(
+        "DataSource:" + dbType + "@" + Integer.toHexString(System.identityHashCode(this)), null);
+    this.acquireTemplate = SpanTemplate.of(null, dbType, null, null, false);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    final TracingContext current = currentContext();
+    return traced(acquire(null, null, dbUser, current), dbUser, current);
+  }
+
+  @Override
+  public Connection getConnection(final String username, final String password) throws SQLException {
+    final TracingContext current = currentContext();
+    return traced(acquire(username, password, username, current), username, current);
+  }
+
+  private TracingContext currentContext() {
+    return null != context ? JdbcTracingUtils.nullsafe(context) : JdbcTracingUtils.resolveContext(tracer);
+  }
+
+  private Connection acquire(final String username, final String password, final String user,
+      final TracingContext current) throws SQLException {
+    final SpanTemplate template = acquireTemplate(user);
+    if (traceAcquisition) {
+      final Scope scope = buildScope(ACQUIRE_OPERATION, template, withActiveSpanOnly, current, sampler, null, null);
+      // no span without an active one (withActiveSpanOnly), the duration is still recorded below
+      if (!(scope instanceof NoopScope)) {
+        try {
+          return connect(username, password);
+        } catch (final Exception e) {
+          JdbcTracingUtils.onError(e, scope);
+          throw e;
+        } finally {
+          scope.close();
+        }
+      }
+    }
+
+    final DurationRecorder recorder = current.durationRecorder();
+    if (null == recorder) {
+      return connect(username, password);
+    }
+    final TracingClock clock = JdbcTiming.clock();
+    final long start = clock.nanoTime();
+    boolean failed = true;
+    try {
+      final Connection connection = connect(username, password);
+      failed = false;
+      return connection;
+    } finally {
+      JdbcTracingUtils.record(recorder, clock.nanoTime() - start, ACQUIRE_OPERATION, template, failed);
+    }
+  }
+
+  private SpanTemplate acquireTemplate(final String user) {
+    final SpanTemplate template = acquireTemplate;
+    // getConnection(username, password) of another user than dbUser
+    return Objects.equals(user, template.dbUser()) ? template : SpanTemplate.of(null, dbType, user, null, false);
+  }
+
+  private Connection connect(final String username, final String password) throws SQLException {
+    return null != username ? dataSource.getConnection(username, password) : dataSource.getConnection();
+  }
+
+  private Connection traced(final Connection connection, final String user, final TracingContext current) {
+    if (registered.compareAndSet(false, true)) {
+      statistics.registerMXBean();
+    }
+    return new TracingConnection(connection, dbType, user, withActiveSpanOnly,
+        ignoreMatcher, null, current, sampler, captureParameters, withRawSql, traceResultSets, traceTransactions,
+        nPlusOneThreshold, statistics);
+  }
+
+  /**
+   * @return statistics of all connections handed out so far, also registered as MXBean with the
+   *         first connection
+   */
+  public StatisticsSnapshot statistics() {
+    return statistics.snapshot();
+  }
+
+  /**
+   * unregisters the statistics MXBean, a later connection registers it again. the wrapped
+   * DataSource is left as it is, close it on its own.
+   */
+  @Override
+  public void close() {
+    if (registered.compareAndSet(true, false)) {
+      statistics.unregisterMXBean();
+    }
+  }
+
+  public void setDbUser(final String dbUser) {
+    this.acquireTemplate = SpanTemplate.of(null, dbType, dbUser, null, false);
+    this.dbUser = dbUser;
+  }
+
+  public void setWithActiveSpanOnly(final boolean withActiveSpanOnly) {
+    this.withActiveSpanOnly = withActiveSpanOnly;
+  }
+
+  /**
+   * @param ignoredStatements exact statements, or rules prefixed with "prefix:", "regex:" or
+   *                          "fingerprint:", see {@link IgnoreMatcher}; compiled here, not reread
+   * @throws IllegalArgumentException for a malformed regex or fingerprint rule
+   */
+  public void setIgnoredStatements(final Set<String> ignoredStatements) {
+    this.ignoreMatcher = IgnoreMatcher.of(ignoredStatements);
+  }
+
+  public void setTracer(final Tracer tracer) {
+    this.tracer = tracer;
+  }
+
+  /**
+   * @param context what all connections report to, {@code null}: the one current at getConnection
+   */
+  public void setContext(final TracingContext context) {
+    this.context = context;
+  }
+
+  public void setSampler(final Sampler sampler) {
+    this.sampler = sampler;
+  }
+
+  public void setCaptureParameters(final boolean captureParameters) {
+    this.captureParameters = captureParameters;
+  }
+
+  public void setWithRawSql(final boolean withRawSql) {
+    this.withRawSql = withRawSql;
+  }
+
+  public void setTraceResultSets(final boolean traceResultSets) {
+    this.traceResultSets = traceResultSets;
+  }
+
+  /**
+   * @param traceAcquisition true: every getConnection also becomes a span, not only a duration
+   */
+  public void setTraceAcquisition(final boolean traceAcquisition) {
+    this.traceAcquisition = traceAcquisition;
+  }
+
+  /**
+   * @param traceTransactions true: statements run while autocommit is off become children of a "Transaction" span
+   */
+  public void setTraceTransactions(final boolean traceTransactions) {
+    this.traceTransactions = traceTransactions;
+  }
+
+  /**
+   * @param nPlusOneThreshold executions of one statement under one parent span that mark it as n+1, 0: off
+   */
+  public void setNPlusOneThreshold(final int nPlusOneThreshold) {
+    this.nPlusOneThreshold = nPlusOneThreshold;
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return dataSource.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(final PrintWriter out) throws SQLException {
+    dataSource.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(final int seconds) throws SQLException {
+    dataSource.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return dataSource.getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    return dataSource.getParentLogger();
+  }
+
+  @Override
+  public <T> T unwrap(final Class<T> iface) throws SQLException {
+    return dataSource.unwrap(iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+    return dataSource.isWrapperFor(iface);
+  }
+
+  @Override
+  public String toString() {
+    return "TracingDataSource [dataSource=" + dataSource + ", dbType=" + dbType + "]";
+  }
+}
@@ -21,89 +21,101 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Set;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.jocean.opentracing.TracingContext;
 
 import io.opentracing.Scope;
-import io.opentracing.Tracer;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
 
 public class TracingStatement implements Statement {
 
-    private static final Logger LOG = LoggerFactory.getLogger(TracingStatement.class);
-
-  private final Statement statement;
+  // the only reference to the driver's statement, subclasses read it through typed accessors
+  final Statement statement;
   private final String query;
-  private final ArrayList<String> batchCommands = new ArrayList<>();
-  private final String dbType;
-  private final String dbUser;
-  private final boolean withActiveSpanOnly;
-  private final Set<String> ignoredStatements;
-  private final Tracer tracer;
-
-  TracingStatement(final Statement statement, final String dbType, final String dbUser, final boolean withActiveSpanOnly,
-      final Set<String> ignoredStatements) {
-    this(statement, dbType, dbUser, withActiveSpanOnly, ignoredStatements, null);
-  }
-
-  TracingStatement(final Statement statement, final String dbType, final String dbUser, final boolean withActiveSpanOnly,
-      final Set<String> ignoredStatements, final Tracer tracer) {
-    this(statement, null, dbType, dbUser, withActiveSpanOnly, ignoredStatements, tracer);
-  }
-
-  TracingStatement(final Statement statement, final String query, final String dbType, final String dbUser,
-      final boolean withActiveSpanOnly, final Set<String> ignoredStatements) {
-    this(statement, query, dbType, dbUser, withActiveSpanOnly, ignoredStatements, null);
-  }
-
-  TracingStatement(final Statement statement, final String query, final String dbType, final String dbUser,
-      final boolean withActiveSpanOnly, final Set<String> ignoredStatements, final Tracer tracer) {
+  // the connection's, shared by all its statements
+  final StatementSettings settings;
+  // execution the next result set belongs to, null while result sets are not traced
+  private Scope lastScope;
+  private SpanTemplate lastTemplate;
+  // template of the last sql executed, reused while the caller passes that very String again
+  private SpanTemplate sqlTemplate;
+  private TracingResultSet currentResultSet;
+  // created by the first addBatch
+  private BatchBuffer batch;
+  // the connection's explicit context, else resolved by the first execution
+  private TracingContext context;
+  // the connection counting this statement open, null for statements built outside of one
+  TracingConnection owner;
+  private boolean closed;
+
+  TracingStatement(final Statement statement, final String query, final StatementSettings settings) {
     this.statement = statement;
     this.query = query;
-    this.dbType = dbType;
-    this.dbUser = dbUser;
-    this.withActiveSpanOnly = withActiveSpanOnly;
-    this.ignoredStatements = ignoredStatements;
-    this.tracer = tracer;
+    this.settings = settings;
+    this.context = settings.context();
   }
 
   @Override
   public ResultSet executeQuery(final String sql) throws SQLException {
-    final Scope scope = buildScope("Query", sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements,
-        tracer);
-    try {
-        LOG.debug("executeQuery: tracer:{}/span:{}",tracer, scope.span());
+    if (!TracingSwitch.enabled) {
       return statement.executeQuery(sql);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Query", template, null);
+    try {
+      onExecute(scope, template);
+      return traceResultSet(statement.executeQuery(sql));
     } catch (final Exception e) {
-      JdbcTracingUtils.onError(e, scope.span());
+      JdbcTracingUtils.onError(e, scope);
       throw e;
     } finally {
       scope.close();
-      LOG.debug("executeQuery finally block: tracer:{}/span:{}",tracer, scope.span());
     }
   }
 
   @Override
   public int executeUpdate(final String sql) throws SQLException {
-    final Scope scope = buildScope("Update", sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements,
-        tracer);
-    try {
-        LOG.debug("executeUpdate: tracer:{}/span:{}",tracer, scope.span());
+    if (!TracingSwitch.enabled) {
       return statement.executeUpdate(sql);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Update", template, null);
+    try {
+      onExecute(scope, template);
+      return rowsAffected(statement.executeUpdate(sql));
     } catch (final Exception e) {
-      JdbcTracingUtils.onError(e, scope.span());
+      JdbcTracingUtils.onError(e, scope);
       throw e;
     } finally {
       scope.close();
-      LOG.debug("executeUpdate finally block: tracer:{}/span:{}",tracer, scope.span());
     }
   }
 
   @Override
   public void close() throws SQLException {
-    statement.close();
+    try {
+      statement.close();
+    } finally {
+      settle();
+      if (null != owner) {
+        owner.untrack(this);
+      }
+    }
+  }
+
+  /**
+   * reports the open result set and counts this statement closed, once. also called by the
+   * connection for the statements still open when it closes
+   */
+  void settle() {
+    finishResultSet();
+    if (!closed) {
+      closed = true;
+      if (null != settings.statistics()) {
+        settings.statistics().onStatementClosed();
+      }
+    }
   }
 
   @Override
@@ -163,23 +175,25 @@ public class TracingStatement implements Statement {
 
   @Override
   public boolean execute(final String sql) throws SQLException {
-    final Scope scope = buildScope("Execute", sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements,
-        tracer);
+    if (!TracingSwitch.enabled) {
+      return statement.execute(sql);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Execute", template, null);
     try {
-        LOG.debug("execute: tracer:{}/span:{}",tracer, scope.span());
+      onExecute(scope, template);
       return statement.execute(sql);
     } catch (final Exception e) {
-      JdbcTracingUtils.onError(e, scope.span());
+      JdbcTracingUtils.onError(e, scope);
       throw e;
     } finally {
       scope.close();
-      LOG.debug("execute finally block: tracer:{}/span:{}",tracer, scope.span());
     }
   }
 
   @Override
   public ResultSet getResultSet() throws SQLException {
-    return statement.getResultSet();
+    return traceResultSet(statement.getResultSet());
   }
 
   @Override
@@ -189,6 +203,7 @@ public class TracingStatement implements Statement {
 
   @Override
   public boolean getMoreResults() throws SQLException {
+    finishResultSet();
     return statement.getMoreResults();
   }
 
@@ -225,26 +240,42 @@ public class TracingStatement implements Statement {
   @Override
   public void addBatch(final String sql) throws SQLException {
     statement.addBatch(sql);
-    batchCommands.add(sql);
+    if (TracingSwitch.enabled) {
+      // rows often differ in their literals only, keep them out of the shared cache
+      batchBuffer().add(sql, SqlNormalizer.normalizedUncached(sql, settings.backslashEscapes()), null);
+    }
   }
 
   @Override
   public void clearBatch() throws SQLException {
     statement.clearBatch();
-    batchCommands.clear();
+    if (null != batch) {
+      batch.clear();
+    }
   }
 
   @Override
   public int[] executeBatch() throws SQLException {
-    final Scope scope = buildScopeForBatch();
-    try {
-        LOG.debug("executeBatch: tracer:{}/span:{}",tracer, scope.span());
+    if (!TracingSwitch.enabled) {
+      if (null != batch) {
+        batch.clear();
+      }
       return statement.executeBatch();
+    }
+    final SpanTemplate template = batchTemplate();
+    final Scope scope = buildStatementScope("Batch", template, batch);
+    try {
+      onExecute(scope, template);
+      return rowsAffected(statement.executeBatch());
     } catch (final Exception e) {
-      JdbcTracingUtils.onError(e, scope.span());
+      JdbcTracingUtils.onError(e, scope);
       throw e;
     } finally {
       scope.close();
+      // the driver empties its batch as well, whether it succeeded or not
+      if (null != batch) {
+        batch.clear();
+      }
     }
   }
 
@@ -255,6 +286,9 @@ public class TracingStatement implements Statement {
 
   @Override
   public boolean getMoreResults(final int current) throws SQLException {
+    if (current != KEEP_CURRENT_RESULT) {
+      finishResultSet();
+    }
     return statement.getMoreResults(current);
   }
 
@@ -265,13 +299,16 @@ public class TracingStatement implements Statement {
 
   @Override
   public int executeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
-    final Scope scope = buildScope("Update", sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements,
-        tracer);
-    try {
-        LOG.debug("executeUpdate with autoGeneratedKeys({}): tracer:{}/span:{}",autoGeneratedKeys, tracer, scope.span());
+    if (!TracingSwitch.enabled) {
       return statement.executeUpdate(sql, autoGeneratedKeys);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Update", template, null);
+    try {
+      onExecute(scope, template);
+      return rowsAffected(statement.executeUpdate(sql, autoGeneratedKeys));
     } catch (final Exception e) {
-      JdbcTracingUtils.onError(e, scope.span());
+      JdbcTracingUtils.onError(e, scope);
       throw e;
     } finally {
       scope.close();
@@ -280,13 +317,16 @@ public class TracingStatement implements Statement {
 
   @Override
   public int executeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
-    final Scope scope = buildScope("Update", sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements,
-        tracer);
-    try {
-        LOG.debug("executeUpdate with columnIndexes: tracer:{}/span:{}",tracer, scope.span());
+    if (!TracingSwitch.enabled) {
       return statement.executeUpdate(sql, columnIndexes);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Update", template, null);
+    try {
+      onExecute(scope, template);
+      return rowsAffected(statement.executeUpdate(sql, columnIndexes));
     } catch (final Exception e) {
-      JdbcTracingUtils.onError(e, scope.span());
+      JdbcTracingUtils.onError(e, scope);
       throw e;
     } finally {
       scope.close();
@@ -295,13 +335,88 @@ public class TracingStatement implements Statement {
 
   @Override
   public int executeUpdate(final String sql, final String[] columnNames) throws SQLException {
-    final Scope scope = buildScope("Update", sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements,
-        tracer);
-    try {
-        LOG.debug("executeUpdate with columnNames: tracer:{}/span:{}",tracer, scope.span());
+    if (!TracingSwitch.enabled) {
       return statement.executeUpdate(sql, columnNames);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Update", template, null);
+    try {
+      onExecute(scope, template);
+      return rowsAffected(statement.executeUpdate(sql, columnNames));
+    } catch (final Exception e) {
+      JdbcTracingUtils.onError(e, scope);
+      throw e;
+    } finally {
+      scope.close();
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql) throws SQLException {
+    if (!TracingSwitch.enabled) {
+      return statement.executeLargeUpdate(sql);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Update", template, null);
+    try {
+      onExecute(scope, template);
+      return rowsAffected(statement.executeLargeUpdate(sql));
+    } catch (final Exception e) {
+      JdbcTracingUtils.onError(e, scope);
+      throw e;
+    } finally {
+      scope.close();
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
+    if (!TracingSwitch.enabled) {
+      return statement.executeLargeUpdate(sql, autoGeneratedKeys);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Update", template, null);
+    try {
+      onExecute(scope, template);
+      return rowsAffected(statement.executeLargeUpdate(sql, autoGeneratedKeys));
     } catch (final Exception e) {
-      JdbcTracingUtils.onError(e, scope.span());
+      JdbcTracingUtils.onError(e, scope);
+      throw e;
+    } finally {
+      scope.close();
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
+    if (!TracingSwitch.enabled) {
+      return statement.executeLargeUpdate(sql, columnIndexes);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Update", template, null);
+    try {
+      onExecute(scope, template);
+      return rowsAffected(statement.executeLargeUpdate(sql, columnIndexes));
+    } catch (final Exception e) {
+      JdbcTracingUtils.onError(e, scope);
+      throw e;
+    } finally {
+      scope.close();
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql, final String[] columnNames) throws SQLException {
+    if (!TracingSwitch.enabled) {
+      return statement.executeLargeUpdate(sql, columnNames);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Update", template, null);
+    try {
+      onExecute(scope, template);
+      return rowsAffected(statement.executeLargeUpdate(sql, columnNames));
+    } catch (final Exception e) {
+      JdbcTracingUtils.onError(e, scope);
       throw e;
     } finally {
       scope.close();
@@ -310,13 +425,16 @@ public class TracingStatement implements Statement {
 
   @Override
   public boolean execute(final String sql, final int autoGeneratedKeys) throws SQLException {
-    final Scope scope = buildScope("Execute", sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements,
-        tracer);
+    if (!TracingSwitch.enabled) {
+      return statement.execute(sql, autoGeneratedKeys);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Execute", template, null);
     try {
-        LOG.debug("execute with autoGeneratedKeys({}): tracer:{}/span:{}", autoGeneratedKeys, tracer, scope.span());
+      onExecute(scope, template);
       return statement.execute(sql, autoGeneratedKeys);
     } catch (final Exception e) {
-      JdbcTracingUtils.onError(e, scope.span());
+      JdbcTracingUtils.onError(e, scope);
       throw e;
     } finally {
       scope.close();
@@ -325,13 +443,16 @@ public class TracingStatement implements Statement {
 
   @Override
   public boolean execute(final String sql, final int[] columnIndexes) throws SQLException {
-    final Scope scope = buildScope("Execute", sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements,
-        tracer);
+    if (!TracingSwitch.enabled) {
+      return statement.execute(sql, columnIndexes);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Execute", template, null);
     try {
-        LOG.debug("execute with columnIndexes: tracer:{}/span:{}", tracer, scope.span());
+      onExecute(scope, template);
       return statement.execute(sql, columnIndexes);
     } catch (final Exception e) {
-      JdbcTracingUtils.onError(e, scope.span());
+      JdbcTracingUtils.onError(e, scope);
       throw e;
     } finally {
       scope.close();
@@ -340,13 +461,16 @@ public class TracingStatement implements Statement {
 
   @Override
   public boolean execute(final String sql, final String[] columnNames) throws SQLException {
-    final Scope scope = buildScope("Execute", sql, dbType, dbUser, withActiveSpanOnly, ignoredStatements,
-        tracer);
+    if (!TracingSwitch.enabled) {
+      return statement.execute(sql, columnNames);
+    }
+    final SpanTemplate template = templateOf(sql);
+    final Scope scope = buildStatementScope("Execute", template, null);
     try {
-        LOG.debug("execute with columnNames: tracer:{}/span:{}", tracer, scope.span());
+      onExecute(scope, template);
       return statement.execute(sql, columnNames);
     } catch (final Exception e) {
-      JdbcTracingUtils.onError(e, scope.span());
+      JdbcTracingUtils.onError(e, scope);
       throw e;
     } finally {
       scope.close();
@@ -393,17 +517,136 @@ public class TracingStatement implements Statement {
     return statement.isWrapperFor(iface);
   }
 
-  private Scope buildScopeForBatch() {
-    final StringBuilder sqlBuilder = new StringBuilder();
-    if (query != null) {
-      sqlBuilder.append(query);
+  Scope buildStatementScope(final String operationName, final SpanTemplate template, final SpanDecorator decorator) {
+    final TransactionTracker transactions = settings.transactions();
+    final SpanContext parent = null != transactions && !template.ignored() ? transactions.beforeStatement() : null;
+    if (null != settings.nPlusOne() && null != template.normalized()) {
+      detectNPlusOne(template.normalized());
+    }
+    final Scope scope = buildScope(operationName, template, settings.withActiveSpanOnly(), context(),
+        settings.sampler(), decorator, parent);
+    if (JdbcDiagnostics.ENABLED) {
+      JdbcDiagnostics.onScope(operationName, template, scope);
+    }
+    final StatementStatistics statistics = settings.statistics();
+    if (null != statistics) {
+      final int operation = StatementStatistics.indexOf(operationName);
+      if (operation >= 0) {
+        return JdbcTracingUtils.countingScope(scope, statistics, operation, template);
+      }
+    }
+    return scope;
+  }
+
+  TracingContext context() {
+    if (null == context) {
+      context = JdbcTracingUtils.resolveContext(settings.tracer());
+    }
+    return context;
+  }
+
+  private void detectNPlusOne(final NormalizedSql statement) {
+    final TransactionTracker transactions = settings.transactions();
+    final Span txSpan = null != transactions ? transactions.span() : null;
+    final Span owner = null != txSpan ? txSpan : context().tracer().activeSpan();
+    if (null != owner) {
+      settings.nPlusOne().onStatement(owner, statement);
+    }
+  }
+
+  int rowsAffected(final int rows) {
+    final TransactionTracker transactions = settings.transactions();
+    if (null != transactions) {
+      transactions.onRowsAffected(rows);
+    }
+    return rows;
+  }
+
+  long rowsAffected(final long rows) {
+    final TransactionTracker transactions = settings.transactions();
+    if (null != transactions) {
+      transactions.onRowsAffected(rows);
+    }
+    return rows;
+  }
+
+  int[] rowsAffected(final int[] counts) {
+    final TransactionTracker transactions = settings.transactions();
+    if (null != transactions) {
+      long rows = 0;
+      for (final int count : counts) {
+        if (count > 0) {
+          rows += count;
+        }
+      }
+      transactions.onRowsAffected(rows);
+    }
+    return counts;
+  }
+
+  private SpanTemplate templateOf(final String sql) {
+    final SpanTemplate cached = sqlTemplate;
+    if (null != cached && sql == cached.rawSql()) {
+      return cached;
+    }
+    final SpanTemplate template = SpanTemplate.of(sql, settings);
+    sqlTemplate = template;
+    return template;
+  }
+
+  /**
+   * an execution starts, the driver closes the previous result sets. called by every execution,
+   * result sets fetched afterwards belong to this one
+   */
+  void onExecute(final Scope scope, final SpanTemplate template) {
+    finishResultSet();
+    if (settings.traceResultSets()) {
+      lastScope = scope;
+      lastTemplate = template;
+    }
+  }
+
+  ResultSet traceResultSet(final ResultSet resultSet) {
+    if (null == lastTemplate || null == resultSet || !TracingSwitch.enabled) {
+      return resultSet;
+    }
+    if (null != currentResultSet && currentResultSet.delegate() == resultSet) {
+      return currentResultSet;
+    }
+    final TracingResultSet traced = JdbcTracingUtils.traceResultSet(resultSet, this, lastScope, lastTemplate,
+        context());
+    if (null == traced) {
+      return resultSet;
+    }
+    finishResultSet();
+    final StatementStatistics statistics = settings.statistics();
+    if (null != statistics) {
+      traced.statistics = statistics;
+      statistics.onResultSetOpened();
+    }
+    currentResultSet = traced;
+    return traced;
+  }
+
+  private void finishResultSet() {
+    if (null != currentResultSet) {
+      currentResultSet.finish();
+      currentResultSet = null;
     }
+  }
 
-    for (final String batchCommand : batchCommands) {
-      sqlBuilder.append(batchCommand);
+  BatchBuffer batchBuffer() {
+    if (null == batch) {
+      batch = new BatchBuffer();
     }
+    return batch;
+  }
 
-    return buildScope("Batch", sqlBuilder.toString(), dbType, dbUser, withActiveSpanOnly,
-        ignoredStatements, tracer);
+  /**
+   * the statement when the whole batch is one statement, a statement-less template otherwise:
+   * db.batch.statements tells them apart
+   */
+  SpanTemplate batchTemplate() {
+    return templateOf(null != query ? query : null != batch ? batch.singleSql() : null);
   }
 }
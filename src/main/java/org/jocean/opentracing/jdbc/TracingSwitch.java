@@ -0,0 +1,13 @@
+package org.jocean.opentracing.jdbc;
+
+/**
+ * the process wide on/off of statement tracing, see {@link TracingDriver#setTracingEnabled(boolean)}.
+ * a single volatile read per call, on x86 a plain load.
+ */
+final class TracingSwitch {
+
+    static volatile boolean enabled = true;
+
+    private TracingSwitch() {
+    }
+}
@@ -0,0 +1,213 @@
+package org.jocean.opentracing.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.jocean.opentracing.DurationRecorder;
+import org.jocean.opentracing.TracingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+
+/**
+ * the transaction a connection is in: opened by the first statement while autocommit is off,
+ * ended by commit, rollback, re-enabling autocommit or closing the connection.
+ * <p>
+ * the "Transaction" span is never activated, it outlives the caller's scopes; statement spans
+ * reference it as their explicit parent instead. commit/rollback latency and the transaction's
+ * duration are recorded as "Commit"/"Rollback"/"Transaction" durations. like the connection
+ * itself, not thread safe.
+ */
+final class TransactionTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionTracker.class);
+
+    static final String OPERATION_NAME = "Transaction";
+
+    static final String DB_TX_OUTCOME = "db.tx.outcome";
+    static final String DB_TX_STATEMENTS = "db.tx.statements";
+    static final String DB_TX_ROWS_AFFECTED = "db.tx.rows_affected";
+    static final String DB_TX_COMMIT_MICROS = "db.tx.commit_micros";
+    static final String DB_TX_ROLLBACK_MICROS = "db.tx.rollback_micros";
+
+    static final String COMMIT = "Commit";
+    static final String ROLLBACK = "Rollback";
+
+    private static final int AUTO_COMMIT_UNKNOWN = -1;
+    private static final int AUTO_COMMIT_OFF = 0;
+    private static final int AUTO_COMMIT_ON = 1;
+
+    private final Connection connection;
+    private final SpanTemplate template;
+    private final boolean withActiveSpanOnly;
+    private final Tracer tracer;
+    // the connection's, null: resolved by each transaction
+    private final TracingContext fixedContext;
+    private final Sampler sampler;
+
+    private int autoCommit = AUTO_COMMIT_UNKNOWN;
+    private boolean open;
+    private TracingContext context;
+    private Span span;
+    private TracingClock clock;
+    private boolean explicitTimestamps;
+    private long start;
+    private int statements;
+    private long rowsAffected;
+
+    TransactionTracker(final Connection connection,
+            final String dbType,
+            final String dbUser,
+            final boolean withActiveSpanOnly,
+            final Tracer tracer,
+            final TracingContext context,
+            final Sampler sampler) {
+        this.connection = connection;
+        this.template = SpanTemplate.of(null, dbType, dbUser, null, false);
+        this.withActiveSpanOnly = withActiveSpanOnly;
+        this.tracer = tracer;
+        this.fixedContext = context;
+        this.sampler = sampler;
+    }
+
+    /**
+     * @return context statement spans should be children of, {@code null} outside a traced transaction
+     */
+    SpanContext beforeStatement() {
+        if (!open) {
+            if (!inTransaction()) {
+                return null;
+            }
+            begin();
+        }
+        statements++;
+        return null != span ? span.context() : null;
+    }
+
+    /**
+     * @return span of the open transaction, {@code null} outside a traced transaction
+     */
+    Span span() {
+        return span;
+    }
+
+    void onRowsAffected(final long rows) {
+        if (open && rows > 0) {
+            rowsAffected += rows;
+        }
+    }
+
+    void onAutoCommit(final boolean enabled) {
+        autoCommit = enabled ? AUTO_COMMIT_ON : AUTO_COMMIT_OFF;
+    }
+
+    void onEvent(final String event) {
+        if (null != span) {
+            span.log(Collections.singletonMap("event", event));
+        }
+    }
+
+    /**
+     * @param operationName {@link #COMMIT} or {@link #ROLLBACK}, recorded with the latency of that call
+     * @param callStart     {@link JdbcTiming#clock()} reading when commit/rollback was invoked
+     * @param failure       what commit/rollback threw, {@code null} if it succeeded
+     */
+    void end(final String operationName, final long callStart, final Throwable failure) {
+        final long now = JdbcTiming.clock().nanoTime();
+        final DurationRecorder recorder = context().durationRecorder();
+        if (null != recorder) {
+            JdbcTracingUtils.record(recorder, now - callStart, operationName, template, null != failure);
+        }
+        if (open) {
+            finish(operationName, now, now - callStart, failure, recorder);
+        }
+    }
+
+    /**
+     * the transaction ended without a commit/rollback call of ours, e.g. the connection was closed
+     */
+    void end(final String outcome) {
+        if (open) {
+            finish(outcome, clock.nanoTime(), -1, null, context.durationRecorder());
+        }
+    }
+
+    private boolean inTransaction() {
+        if (AUTO_COMMIT_UNKNOWN == autoCommit) {
+            try {
+                onAutoCommit(connection.getAutoCommit());
+            } catch (final SQLException e) {
+                LOG.warn("exception when query autocommit of {}, assume on, detail: {}", connection, e.toString());
+                onAutoCommit(true);
+            }
+        }
+        return AUTO_COMMIT_OFF == autoCommit;
+    }
+
+    private void begin() {
+        open = true;
+        clock = JdbcTiming.clock();
+        explicitTimestamps = JdbcTiming.explicitTimestamps();
+        start = clock.nanoTime();
+        statements = 0;
+        rowsAffected = 0;
+        context = null;
+
+        final Tracer currentTracer = context().tracer();
+        if (withActiveSpanOnly && null == currentTracer.activeSpan()) {
+            return;
+        }
+        if (null != sampler && !sampler.sample(template.dbType(), OPERATION_NAME)) {
+            return;
+        }
+        final Tracer.SpanBuilder builder = template.spanBuilder(currentTracer, OPERATION_NAME);
+        if (explicitTimestamps) {
+            builder.withStartTimestamp(clock.epochMicros(start));
+        }
+        span = builder.start();
+    }
+
+    // the open transaction's, or the current one for a commit/rollback outside of it
+    private TracingContext context() {
+        if (null == context) {
+            context = null != fixedContext ? fixedContext : JdbcTracingUtils.resolveContext(tracer);
+        }
+        return context;
+    }
+
+    private void finish(final String outcome,
+            final long end,
+            final long callNanos,
+            final Throwable failure,
+            final DurationRecorder recorder) {
+        if (null != span) {
+            span.setTag(DB_TX_OUTCOME, outcome);
+            span.setTag(DB_TX_STATEMENTS, statements);
+            span.setTag(DB_TX_ROWS_AFFECTED, rowsAffected);
+            if (COMMIT.equals(outcome)) {
+                span.setTag(DB_TX_COMMIT_MICROS, TimeUnit.NANOSECONDS.toMicros(callNanos));
+            } else if (ROLLBACK.equals(outcome)) {
+                span.setTag(DB_TX_ROLLBACK_MICROS, TimeUnit.NANOSECONDS.toMicros(callNanos));
+            }
+            if (null != failure) {
+                JdbcTracingUtils.onError(failure, span);
+            }
+            if (explicitTimestamps) {
+                span.finish(clock.epochMicros(end));
+            } else {
+                span.finish();
+            }
+        }
+        if (null != recorder) {
+            JdbcTracingUtils.record(recorder, end - start, OPERATION_NAME, template, null != failure);
+        }
+        open = false;
+        span = null;
+        context = null;
+    }
+}
@@ -0,0 +1,148 @@
+package org.jocean.opentracing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AsyncDurationRecorderTest {
+
+    // only ever called by the drainer thread
+    private static class CollectingRecorder implements DurationRecorder {
+        final List<Long> amounts = new ArrayList<>();
+        final List<String> tags = new ArrayList<>();
+
+        @Override
+        public void record(final long amount, final TimeUnit unit, final String... tags) {
+            synchronized (this) {
+                this.amounts.add(unit.toMicros(amount));
+                this.tags.add(Arrays.toString(tags));
+            }
+        }
+
+        synchronized int size() {
+            return amounts.size();
+        }
+    }
+
+    private static void awaitDrained(final AsyncDurationRecorder recorder) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (recorder.pending() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testEventsReplayedInOrderAcrossWraparound() throws Exception {
+        final CollectingRecorder delegate = new CollectingRecorder();
+        final AsyncDurationRecorder recorder = new AsyncDurationRecorder(delegate, 8, 4, 10000);
+        try {
+            for (int idx = 0; idx < 100; idx++) {
+                if (0 == idx % 3) {
+                    recorder.record(idx, TimeUnit.MICROSECONDS, "db.type", "mysql", "db.user", "u" + idx % 2,
+                            "db.operation", "Query");
+                } else if (1 == idx % 3) {
+                    recorder.record(idx, TimeUnit.MICROSECONDS, "db.type", "mysql", "db.user", null,
+                            "db.operation", "Update", "error", "true");
+                } else {
+                    recorder.record(idx, TimeUnit.MICROSECONDS, "k", "v" + idx);
+                }
+                awaitDrained(recorder);
+            }
+        } finally {
+            recorder.close();
+        }
+        assertEquals(0, recorder.droppedCount());
+        assertEquals(100, recorder.drainedCount());
+        assertEquals(100, delegate.size());
+        for (int idx = 0; idx < 100; idx++) {
+            assertEquals(Long.valueOf(idx), delegate.amounts.get(idx));
+        }
+        assertEquals("[db.type, mysql, db.user, u0, db.operation, Query]", delegate.tags.get(0));
+        assertEquals("[db.type, mysql, db.user, null, db.operation, Update, error, true]", delegate.tags.get(1));
+        assertEquals("[k, v2]", delegate.tags.get(2));
+        assertEquals("[db.type, mysql, db.user, u1, db.operation, Query]", delegate.tags.get(99));
+    }
+
+    @Test
+    public void testFullBufferDropsAndCounts() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CollectingRecorder collected = new CollectingRecorder();
+        final AsyncDurationRecorder recorder = new AsyncDurationRecorder(new DurationRecorder() {
+            @Override
+            public void record(final long amount, final TimeUnit unit, final String... tags) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                collected.record(amount, unit, tags);
+            }}, 4, 16, 10000);
+        try {
+            recorder.record(0, TimeUnit.MICROSECONDS, "k", "v");
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            // the drainer is stuck in the first event, its slot is free again: 4 fit, 3 don't
+            for (int idx = 1; idx <= 7; idx++) {
+                recorder.record(idx, TimeUnit.MICROSECONDS, "k", "v");
+            }
+            assertEquals(3, recorder.droppedCount());
+            assertEquals(4, recorder.pending());
+        } finally {
+            release.countDown();
+            recorder.close();
+        }
+        assertEquals(5, recorder.drainedCount());
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), collected.amounts);
+    }
+
+    @Test
+    public void testTooManyTagsDropped() throws Exception {
+        final CollectingRecorder delegate = new CollectingRecorder();
+        final AsyncDurationRecorder recorder = new AsyncDurationRecorder(delegate);
+        try {
+            recorder.record(1, TimeUnit.MICROSECONDS, "1", "1", "2", "2", "3", "3", "4", "4", "5", "5", "6", "6");
+            awaitDrained(recorder);
+        } finally {
+            recorder.close();
+        }
+        assertEquals(1, recorder.droppedCount());
+        assertEquals(0, delegate.size());
+    }
+
+    @Test
+    public void testEventsWithUnregisteredTagsCopied() throws Exception {
+        final CollectingRecorder delegate = new CollectingRecorder();
+        final AsyncDurationRecorder recorder = new AsyncDurationRecorder(delegate, 1 << 17, 1024, 10000);
+        final int events = AsyncDurationRecorder.MAX_DISTINCT_TAGS + 100;
+        try {
+            for (int idx = 0; idx < events; idx++) {
+                recorder.record(idx, TimeUnit.MICROSECONDS, "db.operation", "op" + idx);
+                recorder.record(idx, TimeUnit.MICROSECONDS, "db.operation", "op0", "k", "v", "x", "y" + idx % 3,
+                        "db.user", "u");
+            }
+            awaitDrained(recorder);
+        } finally {
+            recorder.close();
+        }
+        // nothing dropped, the tags past the dictionary's bound travel as copies
+        assertEquals(0, recorder.droppedCount());
+        assertEquals(2L * events, recorder.drainedCount());
+        assertEquals(2 * events, delegate.size());
+        // more distinct tag sets than the drainer caches
+        assertTrue(events > AsyncDurationRecorder.MAX_CACHED_TAG_SETS);
+        for (int idx = 0; idx < events; idx += 997) {
+            assertEquals("[db.operation, op" + idx + "]", delegate.tags.get(2 * idx));
+            assertEquals("[db.operation, op0, k, v, x, y" + idx % 3 + ", db.user, u]", delegate.tags.get(2 * idx + 1));
+        }
+        final int last = events - 1;
+        assertEquals("[db.operation, op" + last + "]", delegate.tags.get(2 * last));
+    }
+}
@@ -0,0 +1,78 @@
+package org.jocean.opentracing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class HistogramDurationRecorderTest {
+
+    private static Map<String, LatencySnapshot> byOperation(final List<LatencySnapshot> snapshots) {
+        final Map<String, LatencySnapshot> map = new HashMap<>();
+        for (final LatencySnapshot snapshot : snapshots) {
+            final String operation = snapshot.tags().get("db.operation");
+            map.put(null != operation ? operation : snapshot.tags().toString(), snapshot);
+        }
+        return map;
+    }
+
+    @Test
+    public void testSeriesPerTagsWithErrorsCounted() {
+        final HistogramDurationRecorder recorder = new HistogramDurationRecorder(TimeUnit.MICROSECONDS, 2, 2, 16);
+        recorder.record(100, TimeUnit.MICROSECONDS, "db.type", "mysql", "db.user", "u", "db.operation", "Query");
+        recorder.record(3, TimeUnit.MILLISECONDS, "db.type", "mysql", "db.user", "u", "db.operation", "Query",
+                "error", "true");
+        recorder.record(50, TimeUnit.MICROSECONDS, new String[] { "db.type", "mysql", "db.user", null,
+                "db.operation", "Update" });
+        assertEquals(2, recorder.seriesCount());
+
+        final Map<String, LatencySnapshot> snapshots = byOperation(recorder.intervalSnapshots());
+        assertEquals(2, snapshots.size());
+        final LatencySnapshot query = snapshots.get("Query");
+        assertEquals(2, query.count());
+        assertEquals(1, query.errors());
+        assertTrue(query.toString(), query.max() >= 2990 && query.max() <= 3010);
+        assertEquals("(null)", snapshots.get("Update").tags().get("db.user"));
+
+        // a new interval: idle series are left out
+        recorder.record(10, TimeUnit.MICROSECONDS, "db.type", "mysql", "db.user", "u", "db.operation", "Query");
+        final List<LatencySnapshot> next = recorder.intervalSnapshots();
+        assertEquals(1, next.size());
+        assertEquals(1, next.get(0).count());
+        assertEquals(0, next.get(0).errors());
+    }
+
+    @Test
+    public void testOverflowPastMaxSeries() {
+        final HistogramDurationRecorder recorder = new HistogramDurationRecorder(TimeUnit.MICROSECONDS, 2, 1, 4);
+        for (int idx = 0; idx < 10; idx++) {
+            recorder.record(1, TimeUnit.MICROSECONDS, "db.type", "mysql", "db.user", "u", "db.operation", "op" + idx);
+        }
+        assertEquals(4, recorder.seriesCount());
+        final Map<String, LatencySnapshot> snapshots = byOperation(recorder.intervalSnapshots());
+        assertEquals(5, snapshots.size());
+        assertEquals(6, snapshots.get("{overflow=true}").count());
+    }
+
+    @Test
+    public void testResetDropsSeries() {
+        final HistogramDurationRecorder recorder = new HistogramDurationRecorder(TimeUnit.MICROSECONDS, 2, 1, 4);
+        for (int idx = 0; idx < 10; idx++) {
+            recorder.record(1, TimeUnit.MICROSECONDS, "db.type", "mysql", "db.user", "u", "db.operation", "op" + idx);
+        }
+        recorder.reset();
+        assertEquals(0, recorder.seriesCount());
+        assertTrue(recorder.intervalSnapshots().isEmpty());
+
+        // room for new series again
+        recorder.record(1, TimeUnit.MICROSECONDS, "db.type", "mysql", "db.user", "u", "db.operation", "op9");
+        final Map<String, LatencySnapshot> snapshots = byOperation(recorder.intervalSnapshots());
+        assertEquals(1, snapshots.size());
+        assertEquals(1, snapshots.get("op9").count());
+    }
+}
@@ -0,0 +1,140 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jocean.opentracing.DurationRecorder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveSamplerTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final AtomicLong depth = new AtomicLong();
+    private final List<String> transitions = new ArrayList<>();
+    private AdaptiveSampler sampler;
+
+    @Before
+    public void setUp() {
+        JdbcTiming.setClock(clock);
+        sampler = new AdaptiveSampler(null);
+        // statements of other tests must not count here
+        sampler.setMaxInFlight(-1);
+        sampler.setMaxSpansPerSecond(-1);
+        sampler.setQueueDepth(depth::get, 100);
+        sampler.setRecoveryIntervals(2);
+        sampler.setTransitionRecorder(new DurationRecorder() {
+            @Override
+            public void record(final long amount, final TimeUnit unit, final String... tags) {
+                transitions.add(unit.toMillis(amount) + "ms " + Arrays.toString(tags));
+            }});
+    }
+
+    @After
+    public void resetClock() {
+        JdbcTiming.setClock(null);
+    }
+
+    // the first call past the interval evaluates what the previous interval saw
+    private void nextInterval() {
+        clock.advance(AdaptiveSampler.EVALUATE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        sampler.sample("mysql", "Query");
+    }
+
+    @Test
+    public void testNoEvaluationWithinInterval() {
+        depth.set(1000);
+        clock.advance(AdaptiveSampler.EVALUATE_INTERVAL_MILLIS - 1, TimeUnit.MILLISECONDS);
+        sampler.sample("mysql", "Query");
+        assertEquals("full", sampler.mode());
+        assertEquals(0, sampler.transitions());
+    }
+
+    @Test
+    public void testBacksOffToMetricsOnlyAndRecovers() {
+        depth.set(1000);
+        nextInterval();
+        assertEquals("1/2", sampler.mode());
+        for (int idx = 0; idx < 5; idx++) {
+            nextInterval();
+        }
+        assertEquals("1/64", sampler.mode());
+        nextInterval();
+        assertEquals("metricsOnly", sampler.mode());
+        // stays there, nothing sampled
+        nextInterval();
+        assertEquals("metricsOnly", sampler.mode());
+        for (int idx = 0; idx < 100; idx++) {
+            assertFalse(sampler.sample("mysql", "Query"));
+        }
+        assertFalse(sampler.resample("mysql", "Query", 10_000L, true));
+
+        depth.set(0);
+        nextInterval();
+        // one calm interval is not enough
+        assertEquals("metricsOnly", sampler.mode());
+        nextInterval();
+        assertEquals("1/64", sampler.mode());
+        for (int idx = 0; idx < 12; idx++) {
+            nextInterval();
+        }
+        assertEquals("full", sampler.mode());
+        assertEquals(14, sampler.transitions());
+        assertEquals("100ms [db.operation, AdaptiveTransition, from, full, to, 1/2]", transitions.get(0));
+        // entered one interval before the idle one, then two calm intervals
+        assertEquals("300ms [db.operation, AdaptiveTransition, from, metricsOnly, to, 1/64]", transitions.get(7));
+    }
+
+    @Test
+    public void testCongestionResetsCalmIntervals() {
+        depth.set(1000);
+        nextInterval();
+        assertEquals("1/2", sampler.mode());
+        depth.set(0);
+        nextInterval();
+        // above half the limit: neither congested nor calm
+        depth.set(60);
+        nextInterval();
+        depth.set(0);
+        nextInterval();
+        assertEquals("1/2", sampler.mode());
+        nextInterval();
+        assertEquals("full", sampler.mode());
+    }
+
+    @Test
+    public void testSpanRateCountsSampledOnly() {
+        sampler = new AdaptiveSampler(new Sampler() {
+            @Override
+            public boolean sample(final String dbType, final String operationName) {
+                return "Query".equals(operationName);
+            }
+
+            @Override
+            public boolean resample(final String dbType, final String operationName, final long durationMillis,
+                    final boolean failed) {
+                return false;
+            }});
+        sampler.setMaxInFlight(-1);
+        sampler.setMaxSpansPerSecond(100);
+        // 500 calls/s, not sampled by the wrapped sampler
+        for (int idx = 0; idx < 50; idx++) {
+            sampler.sample("mysql", "Update");
+        }
+        nextInterval();
+        assertEquals("full", sampler.mode());
+        // 200 spans/s
+        for (int idx = 0; idx < 20; idx++) {
+            sampler.sample("mysql", "Query");
+        }
+        nextInterval();
+        assertEquals("1/2", sampler.mode());
+    }
+}
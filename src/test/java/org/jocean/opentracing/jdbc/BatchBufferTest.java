@@ -0,0 +1,98 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+
+public class BatchBufferTest {
+
+    private final MockTracer tracer = new MockTracer();
+
+    private Map<String, Object> tagsOf(final BatchBuffer buffer) {
+        final MockSpan span = tracer.buildSpan("Batch").start();
+        buffer.decorate(span);
+        return span.tags();
+    }
+
+    private static NormalizedSql statement(final int id) {
+        return SqlNormalizer.normalize("update t" + id + " set a = 1");
+    }
+
+    @Test
+    public void testSingleStatement() {
+        final BatchBuffer buffer = new BatchBuffer();
+        buffer.add("update t0 set a = 1", statement(0), null);
+        buffer.add("update t0 set a = 2", statement(0), null);
+        assertEquals(2, buffer.rows());
+        assertEquals("update t0 set a = 1", buffer.singleSql());
+
+        final Map<String, Object> tags = tagsOf(buffer);
+        assertEquals(2L, tags.get(BatchBuffer.DB_BATCH_SIZE));
+        assertEquals(statement(0).fingerprintHex() + ":2", tags.get(BatchBuffer.DB_BATCH_STATEMENTS));
+    }
+
+    @Test
+    public void testDistinctStatementsCapped() {
+        final BatchBuffer buffer = new BatchBuffer();
+        final int extra = 5;
+        for (int id = 0; id < BatchBuffer.MAX_STATEMENTS + extra; id++) {
+            buffer.add(null, statement(id), null);
+        }
+        buffer.add(null, null, null);
+        buffer.add(null, statement(0), null);
+        assertNull(buffer.singleSql());
+
+        final Map<String, Object> tags = tagsOf(buffer);
+        assertEquals((long)BatchBuffer.MAX_STATEMENTS + extra + 2, tags.get(BatchBuffer.DB_BATCH_SIZE));
+        final String[] counts = ((String)tags.get(BatchBuffer.DB_BATCH_STATEMENTS)).split(",");
+        assertEquals(BatchBuffer.MAX_STATEMENTS + 1, counts.length);
+        assertEquals(statement(0).fingerprintHex() + ":2", counts[0]);
+        // rows past the cap and rows without a statement
+        assertEquals("other:" + (extra + 1), counts[BatchBuffer.MAX_STATEMENTS]);
+    }
+
+    @Test
+    public void testParameterSetsCapped() {
+        final BatchBuffer buffer = new BatchBuffer();
+        final ParameterBuffer params = new ParameterBuffer();
+        for (int row = 0; row < BatchBuffer.MAX_PARAMETER_SETS + 2; row++) {
+            params.setLong(1, row);
+            buffer.add(null, statement(0), params);
+        }
+
+        final Map<String, Object> tags = tagsOf(buffer);
+        for (int row = 0; row < BatchBuffer.MAX_PARAMETER_SETS; row++) {
+            // copied, not referenced: later binds don't change earlier rows
+            assertEquals((long)row, tags.get("sql.batch." + row + ".param.1"));
+        }
+        assertFalse(tags.containsKey("sql.batch." + BatchBuffer.MAX_PARAMETER_SETS + ".param.1"));
+    }
+
+    @Test
+    public void testClearedForReuse() {
+        final BatchBuffer buffer = new BatchBuffer();
+        final ParameterBuffer params = new ParameterBuffer();
+        params.setLong(1, 7);
+        buffer.add(null, statement(0), params);
+        buffer.add(null, statement(1), params);
+        buffer.clear();
+        assertEquals(0, buffer.rows());
+
+        buffer.add("update t2 set a = 1", statement(2), null);
+        assertEquals("update t2 set a = 1", buffer.singleSql());
+        final Map<String, Object> tags = tagsOf(buffer);
+        assertEquals(1L, tags.get(BatchBuffer.DB_BATCH_SIZE));
+        assertEquals(statement(2).fingerprintHex() + ":1", tags.get(BatchBuffer.DB_BATCH_STATEMENTS));
+        for (final String key : tags.keySet()) {
+            assertTrue(key, !key.startsWith("sql.batch."));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.opentracing.Scope;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+
+public class DeferredSpanFinisherTest {
+
+    private final MockTracer tracer = new MockTracer();
+    private final ManualClock clock = new ManualClock();
+
+    @After
+    public void reset() {
+        JdbcTiming.setDeferredFinisher(null);
+        JdbcTiming.setClock(null);
+    }
+
+    private Connection connect() {
+        return TracingConnection.builder(new FakeJdbc().connection, "mysql", "u")
+                .tracer(tracer)
+                .traceResultSets(false)
+                .build();
+    }
+
+    private List<MockSpan> finished(final String operationName) {
+        final List<MockSpan> spans = new ArrayList<>();
+        for (final MockSpan span : tracer.finishedSpans()) {
+            if (operationName.equals(span.operationName())) {
+                spans.add(span);
+            }
+        }
+        return spans;
+    }
+
+    @Test
+    public void testSpansBuiltByFinisherThread() throws SQLException {
+        JdbcTiming.setClock(clock);
+        final DeferredSpanFinisher finisher = new DeferredSpanFinisher(16, 4, TimeUnit.MILLISECONDS.toNanos(1));
+        JdbcTiming.setDeferredFinisher(finisher);
+        final MockSpan request = tracer.buildSpan("request").start();
+        try (Connection connection = connect();
+                PreparedStatement statement = connection.prepareStatement("select * from t where id = ?")) {
+            try (Scope scope = tracer.activateSpan(request)) {
+                statement.setInt(1, 42);
+                statement.executeQuery();
+                clock.advance(5, TimeUnit.MILLISECONDS);
+                // the buffered copy is not affected
+                statement.setInt(1, 43);
+                statement.executeQuery();
+            }
+        } finally {
+            request.finish();
+        }
+        // finishes what is pending
+        finisher.close();
+
+        assertEquals(2, finisher.finishedCount());
+        assertEquals(0, finisher.inlineCount());
+        assertEquals(0, finisher.pending());
+        final List<MockSpan> queries = finished("Query");
+        assertEquals(2, queries.size());
+        final long micros = TimeUnit.SECONDS.toMicros(1000);
+        assertEquals(micros, queries.get(0).startMicros());
+        assertEquals(micros, queries.get(0).finishMicros());
+        assertEquals(micros + 5000, queries.get(1).startMicros());
+        assertEquals(42L, queries.get(0).tags().get(ParameterBuffer.keyOf(1)));
+        assertEquals(43L, queries.get(1).tags().get(ParameterBuffer.keyOf(1)));
+        for (final MockSpan query : queries) {
+            assertEquals(request.context().spanId(), query.parentId());
+            assertEquals("select * from t where id = ?", query.tags().get("db.statement"));
+        }
+    }
+
+    @Test
+    public void testFinishedInlineWhenNotAccepted() throws SQLException {
+        final DeferredSpanFinisher finisher = new DeferredSpanFinisher(16, 4, TimeUnit.MILLISECONDS.toNanos(1));
+        // a stopped finisher takes nothing, like a full one
+        finisher.close();
+        JdbcTiming.setDeferredFinisher(finisher);
+        final MockSpan active = tracer.buildSpan("unrelated").start();
+        try (Connection connection = connect()) {
+            connection.createStatement().executeUpdate("update t set x = 1");
+            // the span active while executing is the parent, as with the finisher thread
+            try (Scope scope = tracer.activateSpan(active)) {
+                connection.createStatement().executeUpdate("update t set x = 2");
+            }
+        } finally {
+            active.finish();
+        }
+        assertEquals(2, finisher.inlineCount());
+        assertEquals(0, finisher.finishedCount());
+        final List<MockSpan> updates = finished("Update");
+        assertEquals(2, updates.size());
+        assertEquals(0, updates.get(0).parentId());
+        assertEquals(active.context().spanId(), updates.get(1).parentId());
+    }
+
+    @Test
+    public void testFailureTagged() {
+        final DeferredSpanFinisher finisher = new DeferredSpanFinisher(4, 4, TimeUnit.MILLISECONDS.toNanos(1));
+        final SpanTemplate template = SpanTemplate.of("delete from t", "mysql", "u", null, false);
+        assertTrue(finisher.submit(tracer, "Update", template, null, null, clock, clock.nanoTime(),
+                clock.nanoTime(), new SQLException("deadlock"), true));
+        finisher.close();
+        assertFalse(finisher.submit(tracer, "Update", template, null, null, clock, 0, 0, null, false));
+
+        final MockSpan update = finished("Update").get(0);
+        assertEquals(Boolean.TRUE, update.tags().get("error"));
+        assertEquals(1, update.logEntries().size());
+    }
+
+    @Test
+    public void testCapacityRoundedToPowerOfTwo() {
+        final DeferredSpanFinisher finisher = new DeferredSpanFinisher(1000, 16, TimeUnit.MILLISECONDS.toNanos(1));
+        final DeferredSpanFinisher single = new DeferredSpanFinisher(1, 16, TimeUnit.MILLISECONDS.toNanos(1));
+        try {
+            assertEquals(1024, finisher.capacity());
+            assertEquals(1, single.capacity());
+        } finally {
+            finisher.close();
+            single.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveCapacityRejected() {
+        new DeferredSpanFinisher(0, 16, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,124 @@
+package org.jocean.opentracing.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+/**
+ * in-memory JDBC proxies for the tests: statements return fresh result sets of {@link #rows} rows and
+ * update counts of 1, running {@link #onExecute} within each execution; the connection remembers its
+ * autocommit flag and counts commits and rollbacks, running {@link #onEnd} within each of them.
+ */
+final class FakeJdbc {
+
+    volatile int rows = 3;
+    volatile boolean autoCommit = true;
+    volatile int commits;
+    volatile int rollbacks;
+    volatile Runnable onEnd;
+    volatile Runnable onExecute;
+
+    final Connection connection = proxy(Connection.class, new InvocationHandler() {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            switch (method.getName()) {
+            case "setAutoCommit":
+                autoCommit = (Boolean) args[0];
+                return null;
+            case "getAutoCommit":
+                return autoCommit;
+            case "commit":
+                commits++;
+                return run(onEnd);
+            case "rollback":
+                rollbacks++;
+                return run(onEnd);
+            default:
+                break;
+            }
+            final Class<?> type = method.getReturnType();
+            if (type == Statement.class || type == PreparedStatement.class || type == CallableStatement.class) {
+                return proxy(type, new StatementHandler());
+            }
+            return defaultValue(type);
+        }});
+
+    final DataSource dataSource = proxy(DataSource.class, new InvocationHandler() {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            return method.getReturnType() == Connection.class ? connection : defaultValue(method.getReturnType());
+        }});
+
+    private static Object run(final Runnable callback) {
+        if (null != callback) {
+            callback.run();
+        }
+        return null;
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            if (method.getName().startsWith("execute")) {
+                run(onExecute);
+            }
+            final Class<?> type = method.getReturnType();
+            if (type == ResultSet.class) {
+                return resultSet(rows);
+            } else if (type == Connection.class) {
+                return connection;
+            } else if (type == int[].class) {
+                return new int[] { 1, 1 };
+            } else if (type == long[].class) {
+                return new long[] { 1, 1 };
+            } else if ("executeUpdate".equals(method.getName())) {
+                return 1;
+            } else if ("executeLargeUpdate".equals(method.getName())) {
+                return 1L;
+            } else if ("getUpdateCount".equals(method.getName())) {
+                return -1;
+            } else if ("execute".equals(method.getName())) {
+                return true;
+            }
+            return defaultValue(type);
+        }
+    }
+
+    static ResultSet resultSet(final int rows) {
+        return proxy(ResultSet.class, new InvocationHandler() {
+            private int remaining = rows;
+
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if ("next".equals(method.getName())) {
+                    return remaining-- > 0;
+                }
+                return defaultValue(method.getReturnType());
+            }});
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type.isPrimitive() && type != void.class) {
+            throw new UnsupportedOperationException("fake does not support " + type);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(final Class<T> iface, final InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[] { iface }, handler);
+    }
+}
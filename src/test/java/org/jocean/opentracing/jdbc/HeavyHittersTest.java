@@ -0,0 +1,169 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class HeavyHittersTest {
+
+    private static final int QUERY = StatementStatistics.indexOf("Query");
+    private static final int UPDATE = StatementStatistics.indexOf("Update");
+
+    private static NormalizedSql statement(final int id) {
+        return SqlNormalizer.normalize("select * from t" + id + " where id = ?");
+    }
+
+    @Test
+    public void testSumsExecutionsOfOneStatement() {
+        final HeavyHitters heavyHitters = new HeavyHitters(1, 8);
+        heavyHitters.add(QUERY, statement(1), 100);
+        heavyHitters.add(QUERY, statement(1), 50);
+        heavyHitters.add(UPDATE, statement(1), 10);
+        heavyHitters.add(QUERY, statement(2), 70);
+
+        final List<HeavyHitters.Entry> entries = heavyHitters.snapshot(10);
+        assertEquals(3, entries.size());
+        assertEquals("Query", entries.get(0).operation());
+        assertEquals(statement(1), entries.get(0).statement());
+        assertEquals(150, entries.get(0).totalNanos());
+        assertEquals(2, entries.get(0).executions());
+        assertEquals(0, entries.get(0).maxErrorNanos());
+        assertEquals(70, entries.get(1).totalNanos());
+        // same statement, other operation: an entry of its own
+        assertEquals("Update", entries.get(2).operation());
+        assertEquals(10, entries.get(2).totalNanos());
+
+        assertEquals(1, heavyHitters.snapshot(1).size());
+    }
+
+    @Test
+    public void testSnapshotAndReset() {
+        final HeavyHitters heavyHitters = new HeavyHitters(1, 4);
+        for (int id = 0; id < 10; id++) {
+            heavyHitters.add(QUERY, statement(id), 1 + id);
+        }
+        assertEquals(4, heavyHitters.snapshotAndReset(10).size());
+        assertTrue(heavyHitters.snapshot(10).isEmpty());
+        heavyHitters.add(QUERY, statement(3), 5);
+        assertEquals(5, heavyHitters.snapshot(10).get(0).totalNanos());
+        assertEquals(0, heavyHitters.snapshot(10).get(0).maxErrorNanos());
+    }
+
+    @Test
+    public void testErrorBounds() {
+        final int capacity = 16;
+        final HeavyHitters heavyHitters = new HeavyHitters(1, capacity);
+        final Map<Long, Long> exact = new HashMap<>();
+        final Random random = new Random(42);
+        long total = 0;
+        for (int idx = 0; idx < 20000; idx++) {
+            // three heavy statements among a long tail of light ones
+            final int id = idx % 10 < 3 ? idx % 10 : 3 + random.nextInt(500);
+            final long weight = id < 3 ? 1000 : 1 + random.nextInt(100);
+            final NormalizedSql statement = statement(id);
+            heavyHitters.add(QUERY, statement, weight);
+            final Long sum = exact.get(statement.fingerprint());
+            exact.put(statement.fingerprint(), (null != sum ? sum : 0) + weight);
+            total += weight;
+        }
+
+        final List<HeavyHitters.Entry> entries = heavyHitters.snapshot(capacity);
+        assertEquals(capacity, entries.size());
+        // the heavy ones are always tracked, and come first
+        final Set<NormalizedSql> heaviest = new HashSet<>();
+        for (int idx = 0; idx < 3; idx++) {
+            heaviest.add(entries.get(idx).statement());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(statement(0), statement(1), statement(2))), heaviest);
+        for (final HeavyHitters.Entry entry : entries) {
+            final long actual = exact.get(entry.statement().fingerprint());
+            // never underestimated, overestimated by maxErrorNanos at most, which is below total / capacity
+            assertTrue(entry.toString(), entry.totalNanos() >= actual);
+            assertTrue(entry.toString(), entry.totalNanos() - entry.maxErrorNanos() <= actual);
+            assertTrue(entry.toString(), entry.maxErrorNanos() <= total / capacity);
+        }
+    }
+
+    @Test
+    public void testIndexAgreesWithLinearScan() {
+        final int capacity = 8;
+        final HeavyHitters heavyHitters = new HeavyHitters(1, capacity);
+        // the same Space-Saving summary without an index
+        final long[] fingerprints = new long[capacity];
+        final int[] operations = new int[capacity];
+        final long[] weights = new long[capacity];
+        int size = 0;
+
+        final Random random = new Random(7);
+        for (int idx = 0; idx < 50000; idx++) {
+            final int operation = random.nextInt(2);
+            final NormalizedSql statement = statement(random.nextInt(40));
+            final long weight = 1 + random.nextInt(1000);
+            heavyHitters.add(operation, statement, weight);
+
+            int found = -1;
+            int lightest = 0;
+            for (int slot = 0; slot < size; slot++) {
+                if (fingerprints[slot] == statement.fingerprint() && operations[slot] == operation) {
+                    found = slot;
+                }
+                if (weights[slot] < weights[lightest]) {
+                    lightest = slot;
+                }
+            }
+            if (found >= 0) {
+                weights[found] += weight;
+            } else if (size < capacity) {
+                fingerprints[size] = statement.fingerprint();
+                operations[size] = operation;
+                weights[size++] = weight;
+            } else {
+                fingerprints[lightest] = statement.fingerprint();
+                operations[lightest] = operation;
+                weights[lightest] += weight;
+            }
+        }
+
+        final Map<String, Long> expected = new HashMap<>();
+        for (int slot = 0; slot < size; slot++) {
+            expected.put(StatementStatistics.OPERATIONS[operations[slot]] + fingerprints[slot], weights[slot]);
+        }
+        final Map<String, Long> actual = new HashMap<>();
+        for (final HeavyHitters.Entry entry : heavyHitters.snapshot(capacity)) {
+            actual.put(entry.operation() + entry.statement().fingerprint(), entry.totalNanos());
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testStripesMerged() throws Exception {
+        final HeavyHitters heavyHitters = new HeavyHitters(2, 4);
+        final Thread[] threads = new Thread[4];
+        for (int idx = 0; idx < threads.length; idx++) {
+            threads[idx] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int count = 0; count < 1000; count++) {
+                        heavyHitters.add(QUERY, statement(1), 1);
+                    }
+                }});
+            threads[idx].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final List<HeavyHitters.Entry> entries = heavyHitters.snapshot(10);
+        assertEquals(1, entries.size());
+        assertEquals(4000, entries.get(0).totalNanos());
+        assertEquals(4000, entries.get(0).executions());
+    }
+}
@@ -0,0 +1,96 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IgnoreMatcherTest {
+
+    private static IgnoreMatcher matcherOf(final String... rules) {
+        return IgnoreMatcher.of(new HashSet<>(Arrays.asList(rules)));
+    }
+
+    @Test
+    public void testNoRules() {
+        assertSame(IgnoreMatcher._Nothing, IgnoreMatcher.of(null));
+        assertSame(IgnoreMatcher._Nothing, IgnoreMatcher.of(Collections.<String>emptySet()));
+        assertFalse(IgnoreMatcher._Nothing.matchesSql("select 1"));
+        assertFalse(IgnoreMatcher._Nothing.matchesFingerprint(SqlNormalizer.normalized("select 1")));
+    }
+
+    @Test
+    public void testExactRule() {
+        final IgnoreMatcher matcher = matcherOf("select 1");
+        assertTrue(matcher.matchesSql("select 1"));
+        assertFalse(matcher.matchesSql("select 2"));
+        assertFalse(matcher.matchesSql("SELECT 1"));
+        assertFalse(matcher.matchesSql(" select 1"));
+        assertFalse(matcher.matchesSql("select 1 from dual where a long statement is rejected by its length"));
+    }
+
+    @Test
+    public void testPrefixRule() {
+        final IgnoreMatcher matcher = matcherOf("prefix:SELECT version");
+        assertTrue(matcher.matchesSql("select version()"));
+        assertTrue(matcher.matchesSql("  \n SELECT VERSION()"));
+        assertFalse(matcher.matchesSql("select 1"));
+        assertFalse(matcher.matchesSql("select"));
+        assertFalse(matcher.matchesSql("/* */ select version()"));
+    }
+
+    @Test
+    public void testRegexRule() {
+        final IgnoreMatcher matcher = matcherOf("regex:(?i)^\\s*show ");
+        assertTrue(matcher.matchesSql("SHOW tables"));
+        assertTrue(matcher.matchesSql("  show variables"));
+        assertFalse(matcher.matchesSql("select 'show '"));
+    }
+
+    @Test
+    public void testFingerprintRule() {
+        final NormalizedSql health = SqlNormalizer.normalized("select * from health where id = 1");
+        final IgnoreMatcher matcher = matcherOf("fingerprint:" + health.fingerprintHex());
+        // the fingerprint rule needs the normalized sql, the raw sql alone never matches it
+        assertFalse(matcher.matchesSql("select * from health where id = 1"));
+        assertTrue(matcher.matchesFingerprint(health));
+        assertTrue(matcher.matchesFingerprint(SqlNormalizer.normalized("select *  from health\n where id = 42")));
+        assertFalse(matcher.matchesFingerprint(SqlNormalizer.normalized("select * from other where id = 1")));
+        assertFalse(matcher.matchesFingerprint(null));
+    }
+
+    @Test
+    public void testMixedRules() {
+        final IgnoreMatcher matcher = matcherOf("select 1", "prefix:commit", "regex:^set ");
+        assertTrue(matcher.matchesSql("select 1"));
+        assertTrue(matcher.matchesSql("COMMIT"));
+        assertTrue(matcher.matchesSql("set autocommit=0"));
+        assertFalse(matcher.matchesSql("select 2"));
+    }
+
+    @Test
+    public void testNullRuleSkipped() {
+        final Set<String> rules = new HashSet<>();
+        rules.add(null);
+        rules.add("select 1");
+        final IgnoreMatcher matcher = IgnoreMatcher.of(rules);
+        assertTrue(matcher.matchesSql("select 1"));
+        assertFalse(matcher.matchesSql("select 2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedRegex() {
+        matcherOf("regex:(");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedFingerprint() {
+        matcherOf("fingerprint:not-hex");
+    }
+}
@@ -0,0 +1,25 @@
+package org.jocean.opentracing.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * clock of the tests, only moves when told to
+ */
+final class ManualClock implements TracingClock {
+
+    private volatile long nanos = TimeUnit.SECONDS.toNanos(1000);
+
+    void advance(final long amount, final TimeUnit unit) {
+        nanos += unit.toNanos(amount);
+    }
+
+    @Override
+    public long nanoTime() {
+        return nanos;
+    }
+
+    @Override
+    public long epochMicros(final long nanoTime) {
+        return TimeUnit.NANOSECONDS.toMicros(nanoTime);
+    }
+}
@@ -0,0 +1,93 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.opentracing.Scope;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+
+public class NPlusOneDetectorTest {
+
+    private final MockTracer tracer = new MockTracer();
+
+    private static NormalizedSql sql(final String sql) {
+        return SqlNormalizer.normalized(sql, false);
+    }
+
+    @Test
+    public void testReportedOnceAtThreshold() {
+        final NPlusOneDetector detector = new NPlusOneDetector(3);
+        final MockSpan parent = tracer.buildSpan("request").start();
+        detector.onStatement(parent, sql("select * from a"));
+        for (int id = 0; id < 2; id++) {
+            detector.onStatement(parent, sql("select * from b where a_id = " + id));
+        }
+        assertFalse(parent.tags().containsKey(NPlusOneDetector.DB_N_PLUS_ONE));
+        for (int id = 2; id < 10; id++) {
+            detector.onStatement(parent, sql("select * from b where a_id = " + id));
+        }
+        assertEquals(Boolean.TRUE, parent.tags().get(NPlusOneDetector.DB_N_PLUS_ONE));
+        assertEquals(1, parent.logEntries().size());
+        final Map<String, ?> fields = parent.logEntries().get(0).fields();
+        assertEquals(NPlusOneDetector.EVENT, fields.get("event"));
+        assertEquals("select * from b where a_id = ?", fields.get("db.statement"));
+        assertEquals(sql("select * from b where a_id = 0").fingerprintHex(), fields.get(JdbcTracingUtils.DB_FINGERPRINT));
+        assertEquals(3, fields.get(NPlusOneDetector.DB_REPETITIONS));
+    }
+
+    @Test
+    public void testCountsResetWithNewParent() {
+        final NPlusOneDetector detector = new NPlusOneDetector(3);
+        final MockSpan first = tracer.buildSpan("first").start();
+        final MockSpan second = tracer.buildSpan("second").start();
+        detector.onStatement(first, sql("select * from b where a_id = 1"));
+        detector.onStatement(first, sql("select * from b where a_id = 2"));
+        detector.onStatement(second, sql("select * from b where a_id = 3"));
+        detector.onStatement(second, sql("select * from b where a_id = 4"));
+        assertEquals(0, first.logEntries().size());
+        assertEquals(0, second.logEntries().size());
+        detector.onStatement(second, sql("select * from b where a_id = 5"));
+        assertEquals(1, second.logEntries().size());
+    }
+
+    @Test
+    public void testDistinctStatementsBeyondTableNotCounted() {
+        final NPlusOneDetector detector = new NPlusOneDetector(2);
+        final MockSpan parent = tracer.buildSpan("request").start();
+        // fills the table with distinct fingerprints
+        for (int idx = 0; idx < 100; idx++) {
+            detector.onStatement(parent, sql("select * from t" + idx));
+        }
+        detector.onStatement(parent, sql("select * from t200"));
+        detector.onStatement(parent, sql("select * from t200"));
+        assertEquals(0, parent.logEntries().size());
+        // already tracked ones still count
+        detector.onStatement(parent, sql("select * from t0"));
+        assertEquals(1, parent.logEntries().size());
+    }
+
+    @Test
+    public void testActiveSpanMarkedByConnection() throws SQLException {
+        final MockSpan request = tracer.buildSpan("request").start();
+        try (Connection connection = TracingConnection.builder(new FakeJdbc().connection, "mysql", "u")
+                .tracer(tracer)
+                .nPlusOneThreshold(5)
+                .build();
+                Statement statement = connection.createStatement();
+                Scope scope = tracer.activateSpan(request)) {
+            for (int id = 0; id < 5; id++) {
+                statement.executeQuery("select * from b where a_id = " + id).close();
+            }
+        }
+        request.finish();
+        assertEquals(Boolean.TRUE, request.tags().get(NPlusOneDetector.DB_N_PLUS_ONE));
+    }
+}
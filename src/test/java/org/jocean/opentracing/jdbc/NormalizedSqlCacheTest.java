@@ -0,0 +1,73 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class NormalizedSqlCacheTest {
+
+    @Test
+    public void testHitReturnsCachedInstance() {
+        final NormalizedSqlCache cache = new NormalizedSqlCache(16, false);
+        final NormalizedSql normalized = cache.get("select * from t where id = 1");
+        assertSame(normalized, cache.get("select * from t where id = 1"));
+        assertEquals("select * from t where id = ?", normalized.sql());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testPeekDoesNotCache() {
+        final NormalizedSqlCache cache = new NormalizedSqlCache(16, false);
+        final NormalizedSql cached = cache.get("select * from t where id = 1");
+        assertSame(cached, cache.peek("select * from t where id = 1"));
+        assertEquals("select * from t where id = ?", cache.peek("select * from t where id = 2").sql());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testBoundedBySweep() {
+        final NormalizedSqlCache cache = new NormalizedSqlCache(100, false);
+        for (int idx = 0; idx < 1000; idx++) {
+            cache.get("select * from t" + idx);
+            assertTrue(cache.size() <= 100);
+        }
+        // each sweep brings it back to 90% of the bound
+        assertTrue(cache.size() >= 90);
+    }
+
+    @Test
+    public void testReferencedEntrySurvivesSweeps() {
+        final NormalizedSqlCache cache = new NormalizedSqlCache(10, false);
+        final NormalizedSql hot = cache.get("select * from hot");
+        for (int idx = 0; idx < 100; idx++) {
+            // sets the reference bit, a sweep clears it instead of evicting
+            assertSame(hot, cache.get("select * from hot"));
+            cache.get("select * from cold" + idx);
+        }
+        assertSame(hot, cache.get("select * from hot"));
+    }
+
+    @Test
+    public void testLongStatementNotCached() {
+        final NormalizedSqlCache cache = new NormalizedSqlCache(16, false);
+        final char[] padding = new char[NormalizedSqlCache.MAX_CACHED_LENGTH];
+        Arrays.fill(padding, ' ');
+        final String sql = "select 1" + new String(padding);
+        final NormalizedSql normalized = cache.get(sql);
+        assertEquals("select ?", normalized.sql());
+        assertNotSame(normalized, cache.get(sql));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBackslashEscapes() {
+        final String sql = "select * from t where a = 'c:\\' and b = 1";
+        assertEquals("select * from t where a = ? and b = ?", new NormalizedSqlCache(16, false).get(sql).sql());
+        assertEquals("select * from t where a = ?", new NormalizedSqlCache(16, true).get(sql).sql());
+    }
+}
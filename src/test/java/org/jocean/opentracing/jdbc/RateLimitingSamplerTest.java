@@ -0,0 +1,64 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RateLimitingSamplerTest {
+
+    private final ManualClock clock = new ManualClock();
+
+    @Before
+    public void setUp() {
+        JdbcTiming.setClock(clock);
+    }
+
+    @After
+    public void resetClock() {
+        JdbcTiming.setClock(null);
+    }
+
+    @Test
+    public void testBurstThenRate() {
+        final RateLimitingSampler sampler = new RateLimitingSampler(10);
+        // a second's worth of burst
+        for (int idx = 0; idx < 10; idx++) {
+            assertTrue(sampler.sample("mysql", "Query"));
+        }
+        assertFalse(sampler.sample("mysql", "Query"));
+
+        clock.advance(99, TimeUnit.MILLISECONDS);
+        assertFalse(sampler.sample("mysql", "Query"));
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        assertTrue(sampler.sample("mysql", "Query"));
+        assertFalse(sampler.sample("mysql", "Query"));
+
+        // idle time refills up to the burst only
+        clock.advance(1, TimeUnit.MINUTES);
+        for (int idx = 0; idx < 10; idx++) {
+            assertTrue(sampler.sample("mysql", "Query"));
+        }
+        assertFalse(sampler.sample("mysql", "Query"));
+    }
+
+    @Test
+    public void testBucketPerTypeAndOperation() {
+        final RateLimitingSampler sampler = new RateLimitingSampler(1);
+        assertTrue(sampler.sample("mysql", "Query"));
+        assertFalse(sampler.sample("mysql", "Query"));
+        assertTrue(sampler.sample("mysql", "Update"));
+        assertTrue(sampler.sample("postgresql", "Query"));
+        assertTrue(sampler.sample(null, "Query"));
+        assertFalse(sampler.resample("mysql", "Query", 10_000L, true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveRateRejected() {
+        new RateLimitingSampler(0);
+    }
+}
@@ -0,0 +1,90 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+
+public class SlowQueryDetectorTest {
+
+    private static final String SQL = "select * from t where id = ?";
+
+    private final MockTracer tracer = new MockTracer();
+    private final ManualClock clock = new ManualClock();
+    private final FakeJdbc jdbc = new FakeJdbc();
+
+    @After
+    public void resetClock() {
+        JdbcTiming.setClock(null);
+    }
+
+    // one execution taking the given millis
+    private void execute(final PreparedStatement statement, final long millis) throws SQLException {
+        jdbc.onExecute = () -> clock.advance(millis, TimeUnit.MILLISECONDS);
+        statement.setInt(1, 7);
+        statement.executeQuery().close();
+    }
+
+    @Test
+    public void testThresholdPrecedence() {
+        final SlowQueryDetector detector = new SlowQueryDetector(100);
+        detector.setDbTypeThresholdMillis("mysql", 50);
+        detector.setFingerprintThresholdMillis("abc", 10);
+        assertEquals(10, detector.thresholdMillis("mysql", "abc"));
+        assertEquals(10, detector.thresholdMillis("postgresql", "abc"));
+        assertEquals(50, detector.thresholdMillis("mysql", "def"));
+        assertEquals(100, detector.thresholdMillis("postgresql", null));
+        detector.removeFingerprintThreshold("abc");
+        detector.removeDbTypeThreshold("mysql");
+        assertEquals(100, detector.thresholdMillis("mysql", "abc"));
+    }
+
+    @Test
+    public void testSlowOnlyAndNeverSampledUpFront() {
+        final SlowQueryDetector detector = new SlowQueryDetector(100);
+        assertFalse(detector.sample("mysql", "Query"));
+        assertFalse(detector.resample("mysql", "Query", 99, true));
+        assertTrue(detector.resample("mysql", "Query", 100, false));
+        detector.setDefaultThresholdMillis(-1);
+        assertFalse(detector.resample("mysql", "Query", Long.MAX_VALUE, false));
+    }
+
+    @Test
+    public void testSlowExecutionTracedWithDetail() throws SQLException {
+        JdbcTiming.setClock(clock);
+        final SlowQueryDetector detector = new SlowQueryDetector(30);
+        try (Connection connection = TracingConnection.builder(jdbc.connection, "mysql", "u")
+                .tracer(tracer)
+                .sampler(detector)
+                .traceResultSets(false)
+                .build();
+                PreparedStatement statement = connection.prepareStatement(SQL)) {
+            execute(statement, 10);
+            execute(statement, 50);
+            // changed at runtime, picked up by the next execution
+            detector.setDbTypeThresholdMillis("mysql", 100);
+            execute(statement, 50);
+            detector.setFingerprintThresholdMillis(SqlNormalizer.normalized(SQL, false).fingerprintHex(), 20);
+            execute(statement, 25);
+        }
+
+        final List<MockSpan> spans = tracer.finishedSpans();
+        assertEquals(2, spans.size());
+        final MockSpan slow = spans.get(0);
+        assertEquals(50_000L, slow.finishMicros() - slow.startMicros());
+        assertEquals(SQL, slow.tags().get(JdbcTracingUtils.DB_STATEMENT_RAW));
+        assertEquals(7L, slow.tags().get(ParameterBuffer.keyOf(1)));
+        assertEquals(25_000L, spans.get(1).finishMicros() - spans.get(1).startMicros());
+    }
+}
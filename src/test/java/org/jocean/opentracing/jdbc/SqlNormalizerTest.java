@@ -0,0 +1,113 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SqlNormalizerTest {
+
+    private static String normalize(final String sql) {
+        return SqlNormalizer.normalize(sql).sql();
+    }
+
+    private static String normalize(final String sql, final String dbType) {
+        return SqlNormalizer.normalize(sql, dbType).sql();
+    }
+
+    @Test
+    public void testLiterals() {
+        assertEquals("select * from t where a = ? and b = ? and c = ?",
+                normalize("select * from t where a = 'x' and b = 42 and c = 1.5e-3"));
+        assertEquals("select * from t where a = ?", normalize("select * from t where a = 'it''s'"));
+        assertEquals("select ?, ?, ?", normalize("select N'x', X'0f', E'y'"));
+    }
+
+    @Test
+    public void testUnaryMinusFolded() {
+        assertEquals("select * from t where a = ? and b in (?+) and c > ?",
+                normalize("select * from t where a = -1 and b in (-2, 3) and c > - .5"));
+        assertEquals(normalize("update t set a=1 where b=2"), normalize("update t set a=-1 where b=-2"));
+        // binary minus kept
+        assertEquals("select a - ?, (a)-?, ? - ? from t", normalize("select a - 1, (a)-1, 1 - -1 from t"));
+    }
+
+    @Test
+    public void testIdentifiersKept() {
+        assertEquals("select t1.col_2, \"Col 3\", `k` from t1",
+                normalize("select t1.col_2, \"Col 3\", `k` from t1"));
+    }
+
+    @Test
+    public void testCommentsAndWhitespace() {
+        assertEquals("select a from t where b = ?",
+                normalize("  select   a -- first\n from t /* block */\twhere b =\n 1  "));
+    }
+
+    @Test
+    public void testInListCollapsed() {
+        assertEquals("select * from t where id in (?+)", normalize("select * from t where id in (1, 2,3)"));
+        assertEquals(normalize("select * from t where id IN (1)"), normalize("select * from t where id IN (1, 2)"));
+    }
+
+    @Test
+    public void testValuesTuplesFolded() {
+        assertEquals("insert into t (a, b) values (?, ?), ...",
+                normalize("insert into t (a, b) values (1, 'x'), (2, 'y'), (3, 'z')"));
+    }
+
+    @Test
+    public void testBackslashEscapesOnlyForMySql() {
+        assertTrue(SqlNormalizer.backslashEscapes("mysql"));
+        assertTrue(SqlNormalizer.backslashEscapes("MariaDB"));
+        assertFalse(SqlNormalizer.backslashEscapes("postgresql"));
+        assertFalse(SqlNormalizer.backslashEscapes(null));
+
+        // mysql: \' is an escaped quote inside the literal
+        assertEquals("select * from t where a = ? and b = ?",
+                normalize("select * from t where a = 'it\\'s' and b = 1", "mysql"));
+        // standard sql: the backslash is a plain character, the literal ends at the next quote
+        assertEquals("select * from t where a = ? and b = ?",
+                normalize("select * from t where a = 'c:\\' and b = 1", "postgresql"));
+        assertEquals("select * from t where a = ? and b = ?",
+                normalize("select * from t where a = 'c:\\' and b = 1"));
+        // whereas mysql reads on to the end of the statement
+        assertEquals("select * from t where a = ?", normalize("select * from t where a = 'c:\\' and b = 1", "mysql"));
+    }
+
+    @Test
+    public void testEscapeStringTakesBackslashes() {
+        assertEquals("select ?, ? from t", normalize("select E'it\\'s', 'x''y' from t", "postgresql"));
+    }
+
+    @Test
+    public void testFingerprintIsFnv1a() {
+        assertEquals(0xcbf29ce484222325L, SqlNormalizer.fingerprint(""));
+        // low byte, then high byte of each char
+        assertEquals(0x089be207b544f1e4L, SqlNormalizer.fingerprint("a"));
+        assertNotEquals(SqlNormalizer.fingerprint("ab"), SqlNormalizer.fingerprint("ba"));
+        assertNotEquals(SqlNormalizer.fingerprint("\u0100"), SqlNormalizer.fingerprint("\u0001"));
+    }
+
+    @Test
+    public void testFingerprintIgnoresLiterals() {
+        final NormalizedSql one = SqlNormalizer.normalize("select * from t where id = 1");
+        final NormalizedSql two = SqlNormalizer.normalize("select *\n from t where id = 2");
+        assertEquals(one.fingerprint(), two.fingerprint());
+        assertEquals(one.fingerprintHex(), two.fingerprintHex());
+        assertEquals(16, one.fingerprintHex().length());
+    }
+
+    @Test
+    public void testNormalizedIsCached() {
+        final String sql = "select * from cached where id = 7";
+        assertSame(SqlNormalizer.normalized(sql), SqlNormalizer.normalized(sql));
+        assertSame(SqlNormalizer.normalized(sql, "mysql"), SqlNormalizer.normalized(sql, "mysql"));
+        assertEquals(SqlNormalizer.normalized(sql).sql(), SqlNormalizer.normalized(sql, "mysql").sql());
+        assertNull(SqlNormalizer.normalized(null));
+    }
+}
@@ -0,0 +1,86 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Test;
+
+import io.opentracing.mock.MockTracer;
+
+public class StatementStatisticsTest {
+
+    private final MockTracer tracer = new MockTracer();
+    private final StatementStatistics parent = new StatementStatistics("parent", null);
+
+    private TracingConnection connect() {
+        return new TracingConnection(new FakeJdbc().connection, "mysql", "u", false, IgnoreMatcher._Nothing, tracer,
+                null, null, true, false, true, false, 0, parent);
+    }
+
+    private static void assertOpen(final long statements, final long resultSets, final StatisticsSnapshot snapshot) {
+        assertEquals(snapshot.toString(), statements, snapshot.openStatements());
+        assertEquals(snapshot.toString(), resultSets, snapshot.openResultSets());
+    }
+
+    @Test
+    public void testGaugesFollowCloses() throws SQLException {
+        final TracingConnection connection = connect();
+        final Statement statement = connection.createStatement();
+        final ResultSet resultSet = statement.executeQuery("select * from t");
+        assertOpen(1, 1, connection.statistics());
+        assertOpen(1, 1, parent.snapshot());
+
+        resultSet.close();
+        resultSet.close();
+        assertOpen(1, 0, connection.statistics());
+        statement.close();
+        statement.close();
+        assertOpen(0, 0, connection.statistics());
+        connection.close();
+        assertOpen(0, 0, parent.snapshot());
+        assertEquals(1, parent.snapshot().connectionsCreated());
+        assertEquals(1, parent.snapshot().connectionsClosed());
+    }
+
+    @Test
+    public void testConnectionCloseSettlesOpenStatements() throws SQLException {
+        final TracingConnection connection = connect();
+        connection.createStatement().executeQuery("select * from t");
+        final PreparedStatement prepared = connection.prepareStatement("select * from t where id = ?");
+        prepared.executeQuery();
+        connection.prepareCall("call p()");
+        final Statement closedBefore = connection.createStatement();
+        closedBefore.close();
+        assertOpen(3, 2, parent.snapshot());
+
+        connection.close();
+        assertOpen(0, 0, connection.statistics());
+        assertOpen(0, 0, parent.snapshot());
+        // closing them afterwards doesn't count them again
+        prepared.close();
+        connection.close();
+        assertOpen(0, 0, parent.snapshot());
+        assertEquals(1, parent.snapshot().connectionsClosed());
+    }
+
+    @Test
+    public void testExecutionsCountedIntoParent() throws SQLException {
+        final TracingConnection connection = connect();
+        final Statement statement = connection.createStatement();
+        statement.executeQuery("select 1");
+        statement.executeUpdate("update t set a = 1");
+        statement.executeUpdate("update t set a = 2");
+        connection.close();
+
+        for (final StatisticsSnapshot snapshot : new StatisticsSnapshot[] { connection.statistics(),
+                parent.snapshot() }) {
+            assertEquals(1, snapshot.operations().get("Query").executions());
+            assertEquals(2, snapshot.operations().get("Update").executions());
+            assertEquals(0, snapshot.operations().get("Update").errors());
+        }
+    }
+}
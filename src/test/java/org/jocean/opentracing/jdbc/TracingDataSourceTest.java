@@ -0,0 +1,121 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.jocean.opentracing.DurationRecorder;
+import org.jocean.opentracing.TracingContext;
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+
+public class TracingDataSourceTest {
+
+    private final MockTracer tracer = new MockTracer();
+    private final List<String> recorded = new ArrayList<>();
+    private final DurationRecorder recorder = new DurationRecorder() {
+        @Override
+        public void record(final long amount, final TimeUnit unit, final String... tags) {
+            recorded.add(Arrays.toString(tags));
+        }};
+
+    private TracingDataSource dataSource() {
+        final TracingDataSource dataSource = new TracingDataSource(new FakeJdbc().dataSource, "mysql");
+        dataSource.setContext(TracingContext.of(tracer, recorder));
+        return dataSource;
+    }
+
+    @Test
+    public void testAcquireRecordedWithoutSpan() throws SQLException {
+        final TracingDataSource dataSource = dataSource();
+        dataSource.setDbUser("app");
+        dataSource.setTraceAcquisition(true);
+        // no active span: no span, still a duration
+        dataSource.setWithActiveSpanOnly(true);
+        try {
+            dataSource.getConnection().close();
+        } finally {
+            dataSource.close();
+        }
+        assertTrue(tracer.finishedSpans().isEmpty());
+        assertEquals(Arrays.asList("[db.type, mysql, db.user, app, db.operation, GetConnection]"), recorded);
+    }
+
+    @Test
+    public void testAcquireSpanPerUser() throws SQLException {
+        final TracingDataSource dataSource = dataSource();
+        dataSource.setDbUser("app");
+        dataSource.setTraceAcquisition(true);
+        try {
+            dataSource.getConnection().close();
+            dataSource.getConnection("admin", "secret").close();
+            dataSource.setDbUser("other");
+            dataSource.getConnection().close();
+        } finally {
+            dataSource.close();
+        }
+        final List<MockSpan> spans = tracer.finishedSpans();
+        assertEquals(3, spans.size());
+        assertEquals("app", spans.get(0).tags().get("db.user"));
+        assertEquals("admin", spans.get(1).tags().get("db.user"));
+        assertEquals("other", spans.get(2).tags().get("db.user"));
+        for (final MockSpan span : spans) {
+            assertEquals(TracingDataSource.ACQUIRE_OPERATION, span.operationName());
+        }
+    }
+
+    @Test
+    public void testStatisticsAcrossConnections() throws SQLException {
+        final TracingDataSource dataSource = dataSource();
+        try {
+            final Connection first = dataSource.getConnection();
+            final Connection second = dataSource.getConnection();
+            first.createStatement().executeQuery("select 1");
+            second.createStatement();
+            assertEquals(2, dataSource.statistics().openStatements());
+            first.close();
+            second.close();
+        } finally {
+            dataSource.close();
+        }
+        final StatisticsSnapshot snapshot = dataSource.statistics();
+        assertEquals(2, snapshot.connectionsCreated());
+        assertEquals(2, snapshot.connectionsClosed());
+        assertEquals(0, snapshot.openStatements());
+        assertEquals(0, snapshot.openResultSets());
+        assertEquals(1, snapshot.operations().get("Query").executions());
+    }
+
+    @Test
+    public void testCloseUnregistersMXBean() throws Exception {
+        final TracingDataSource dataSource = dataSource();
+        final ObjectName name = new ObjectName(StatementStatistics.JMX_DOMAIN + ":type=StatementStatistics,name="
+                + ObjectName.quote(dataSource.statistics().name()));
+        dataSource.getConnection().close();
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        dataSource.close();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        // registered again by the next connection
+        dataSource.getConnection().close();
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        dataSource.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedIgnoreRuleRejected() {
+        dataSource().setIgnoredStatements(Collections.singleton("regex:("));
+    }
+}
@@ -0,0 +1,115 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+public class TracingDriverTest {
+
+    private static final String URL = "jdbc:tracing:fakecache://localhost/db?traceWithActiveSpanOnly=false";
+
+    // a named class: DriverManager hides drivers whose class the caller can't load by name, e.g. proxies
+    static final class CountingDriver implements Driver {
+        int connects;
+
+        @Override
+        public Connection connect(final String url, final Properties info) {
+            connects++;
+            return new FakeJdbc().connection;
+        }
+
+        @Override
+        public boolean acceptsURL(final String url) {
+            return url.startsWith("jdbc:fakecache:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(final String url, final Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return null;
+        }
+    }
+
+    private static void reconnect(final TracingDriver driver, final boolean invalidate) throws SQLException {
+        final CountingDriver first = new CountingDriver();
+        DriverManager.registerDriver(first);
+        final CountingDriver second = new CountingDriver();
+        try {
+            driver.connect(URL, new Properties()).close();
+            assertEquals(1, first.connects);
+
+            // e.g. an application redeployed: its driver replaced by a new instance
+            DriverManager.deregisterDriver(first);
+            DriverManager.registerDriver(second);
+            if (invalidate) {
+                driver.invalidateUrlCache();
+            }
+            driver.connect(URL, new Properties()).close();
+            assertEquals(1, first.connects);
+            assertEquals(1, second.connects);
+        } finally {
+            DriverManager.deregisterDriver(first);
+            DriverManager.deregisterDriver(second);
+        }
+    }
+
+    @Test
+    public void testInvalidatedCacheFindsReregisteredDriver() throws SQLException {
+        reconnect(new TracingDriver(), true);
+    }
+
+    @Test
+    public void testDeregisteredDriverDroppedFromCache() throws SQLException {
+        // the first revalidation is due with the first cached url, later ones a second apart
+        reconnect(new TracingDriver(), false);
+    }
+
+    private static void assertRejected(final String url, final String param) {
+        try {
+            new TracingDriver().connect(url, new Properties());
+            fail(url + " accepted");
+        } catch (final SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(param));
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testSampleRateOutOfRangeRejected() {
+        assertRejected("jdbc:tracing:mysql://localhost:3306/db?traceSampleRate=1.5", "traceSampleRate");
+    }
+
+    @Test
+    public void testZeroRateLimitRejected() {
+        assertRejected("jdbc:tracing:mysql://localhost:3306/db?traceRateLimit=0", "traceRateLimit");
+    }
+}
@@ -0,0 +1,122 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+
+public class TracingResultSetTest {
+
+    private final MockTracer tracer = new MockTracer();
+
+    @After
+    public void resetClock() {
+        JdbcTiming.setClock(null);
+    }
+
+    private TracingConnection connect() {
+        return new TracingConnection(new FakeJdbc().connection, "mysql", "u", false, IgnoreMatcher._Nothing, tracer,
+                null, null, true, false, true, false, 0, null);
+    }
+
+    private MockSpan finished(final String operationName, final int nth) {
+        int count = 0;
+        for (final MockSpan span : tracer.finishedSpans()) {
+            if (operationName.equals(span.operationName()) && count++ == nth) {
+                return span;
+            }
+        }
+        throw new AssertionError("no " + operationName + " #" + nth + " in " + tracer.finishedSpans());
+    }
+
+    @Test
+    public void testResultSetBelongsToLastExecution() throws SQLException {
+        final Statement statement = connect().createStatement();
+        statement.executeQuery("select * from a").close();
+        statement.executeUpdate("update b set x = 1");
+        statement.getResultSet().close();
+        statement.executeLargeUpdate("update c set x = 1");
+        statement.getResultSet().close();
+        statement.close();
+
+        final MockSpan update = finished("Update", 0);
+        final MockSpan fetch = finished("Fetch", 1);
+        assertEquals(update.context().spanId(), fetch.parentId());
+        assertEquals("update b set x = ?", fetch.tags().get("db.statement"));
+        final MockSpan largeUpdate = finished("Update", 1);
+        assertEquals(largeUpdate.context().spanId(), finished("Fetch", 2).parentId());
+    }
+
+    @Test
+    public void testRowsAndFirstRowTiming() throws SQLException {
+        final ManualClock clock = new ManualClock();
+        JdbcTiming.setClock(clock);
+        final FakeJdbc jdbc = new FakeJdbc();
+        jdbc.rows = 2;
+        final TracingConnection connection = new TracingConnection(jdbc.connection, "mysql", "u", false,
+                IgnoreMatcher._Nothing, tracer, null, null, true, false, true, false, 0, null);
+        final ResultSet resultSet = connection.createStatement().executeQuery("select * from t");
+        clock.advance(250, TimeUnit.MICROSECONDS);
+        assertTrue(resultSet.next());
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        assertTrue(resultSet.next());
+        assertTrue(!resultSet.next());
+        assertEquals(2, ((TracingResultSet) resultSet).rowCount());
+        resultSet.close();
+
+        final MockSpan fetch = finished("Fetch", 0);
+        assertEquals(2L, fetch.tags().get(TracingResultSet.DB_ROWS));
+        // sub-millisecond first rows are the common case
+        assertEquals(250L, fetch.tags().get(TracingResultSet.DB_FIRST_ROW_MICROS));
+        assertEquals(1250L, fetch.finishMicros() - fetch.startMicros());
+    }
+
+    @Test
+    public void testNoFirstRowForEmptyResultSet() throws SQLException {
+        final FakeJdbc jdbc = new FakeJdbc();
+        jdbc.rows = 0;
+        final TracingConnection connection = new TracingConnection(jdbc.connection, "mysql", "u", false,
+                IgnoreMatcher._Nothing, tracer, null, null, true, false, true, false, 0, null);
+        final ResultSet resultSet = connection.createStatement().executeQuery("select * from t");
+        assertTrue(!resultSet.next());
+        resultSet.close();
+        final MockSpan fetch = finished("Fetch", 0);
+        assertEquals(0L, fetch.tags().get(TracingResultSet.DB_ROWS));
+        assertTrue(!fetch.tags().containsKey(TracingResultSet.DB_FIRST_ROW_MICROS));
+    }
+
+    @Test
+    public void testResultSetNotTracedWhenDisabled() throws SQLException {
+        final TracingConnection connection = new TracingConnection(new FakeJdbc().connection, "mysql", "u", false,
+                IgnoreMatcher._Nothing, tracer, null, null, true, false, false, false, 0, null);
+        final ResultSet resultSet = connection.createStatement().executeQuery("select 1");
+        assertTrue(!(resultSet instanceof TracingResultSet));
+    }
+
+    @Test
+    public void testFetchSpanPerResultSet() throws SQLException {
+        final Statement statement = connect().createStatement();
+        statement.executeQuery("select 1");
+        // re-executing finishes the previous fetch
+        statement.executeQuery("select 2");
+        statement.close();
+        final List<MockSpan> spans = tracer.finishedSpans();
+        int fetches = 0;
+        for (final MockSpan span : spans) {
+            if ("Fetch".equals(span.operationName())) {
+                fetches++;
+            }
+        }
+        assertEquals(2, fetches);
+    }
+}
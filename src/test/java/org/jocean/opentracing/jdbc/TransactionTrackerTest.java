@@ -0,0 +1,157 @@
+package org.jocean.opentracing.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jocean.opentracing.DurationRecorder;
+import org.jocean.opentracing.TracingContext;
+import org.junit.After;
+import org.junit.Test;
+
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+
+public class TransactionTrackerTest {
+
+    private final MockTracer tracer = new MockTracer();
+    private final FakeJdbc jdbc = new FakeJdbc();
+    private final ManualClock clock = new ManualClock();
+    private final List<String> recorded = new ArrayList<>();
+    private final DurationRecorder recorder = new DurationRecorder() {
+        @Override
+        public void record(final long amount, final TimeUnit unit, final String... tags) {
+            recorded.add(tags[5] + " " + unit.toMicros(amount));
+        }};
+
+    @After
+    public void resetClock() {
+        JdbcTiming.setClock(null);
+    }
+
+    private Connection connect() {
+        JdbcTiming.setClock(clock);
+        jdbc.autoCommit = false;
+        return TracingConnection.builder(jdbc.connection, "mysql", "u")
+                .context(TracingContext.of(tracer, recorder))
+                .traceTransactions(true)
+                .build();
+    }
+
+    private MockSpan finished(final String operationName) {
+        MockSpan found = null;
+        for (final MockSpan span : tracer.finishedSpans()) {
+            if (operationName.equals(span.operationName())) {
+                assertTrue("more than one " + operationName, null == found);
+                found = span;
+            }
+        }
+        assertTrue("no " + operationName + " in " + tracer.finishedSpans(), null != found);
+        return found;
+    }
+
+    @Test
+    public void testStatementsParentedByTransaction() throws SQLException {
+        final Connection connection = connect();
+        final Statement statement = connection.createStatement();
+        statement.executeUpdate("update t set x = 1");
+        statement.executeQuery("select * from t").close();
+        jdbc.onEnd = () -> clock.advance(700, TimeUnit.MICROSECONDS);
+        connection.commit();
+        statement.close();
+        connection.close();
+
+        final MockSpan transaction = finished(TransactionTracker.OPERATION_NAME);
+        assertEquals(0, transaction.parentId());
+        assertEquals(transaction.context().spanId(), finished("Update").parentId());
+        assertEquals(transaction.context().spanId(), finished("Query").parentId());
+        assertEquals(TransactionTracker.COMMIT, transaction.tags().get(TransactionTracker.DB_TX_OUTCOME));
+        assertEquals(2, transaction.tags().get(TransactionTracker.DB_TX_STATEMENTS));
+        assertEquals(1L, transaction.tags().get(TransactionTracker.DB_TX_ROWS_AFFECTED));
+        assertEquals(700L, transaction.tags().get(TransactionTracker.DB_TX_COMMIT_MICROS));
+        assertFalse(transaction.tags().containsKey(TransactionTracker.DB_TX_ROLLBACK_MICROS));
+        assertEquals(1, jdbc.commits);
+        assertTrue(recorded.toString(), recorded.contains("Commit 700"));
+        assertTrue(recorded.toString(), recorded.contains("Transaction 700"));
+    }
+
+    @Test
+    public void testRollbackOutcome() throws SQLException {
+        final Connection connection = connect();
+        connection.createStatement().executeUpdate("delete from t");
+        connection.rollback();
+        connection.close();
+
+        final MockSpan transaction = finished(TransactionTracker.OPERATION_NAME);
+        assertEquals(TransactionTracker.ROLLBACK, transaction.tags().get(TransactionTracker.DB_TX_OUTCOME));
+        assertEquals(0L, transaction.tags().get(TransactionTracker.DB_TX_ROLLBACK_MICROS));
+        assertFalse(transaction.tags().containsKey(TransactionTracker.DB_TX_COMMIT_MICROS));
+        assertEquals(1, jdbc.rollbacks);
+    }
+
+    @Test
+    public void testEndedByAutoCommitThenByClose() throws SQLException {
+        final Connection connection = connect();
+        connection.createStatement().executeUpdate("update t set x = 1");
+        connection.setAutoCommit(true);
+        // autocommit on: no transaction
+        connection.createStatement().executeUpdate("update t set x = 2");
+        connection.setAutoCommit(false);
+        connection.createStatement().executeUpdate("update t set x = 3");
+        connection.close();
+
+        final List<String> outcomes = new ArrayList<>();
+        int updates = 0;
+        for (final MockSpan span : tracer.finishedSpans()) {
+            if (TransactionTracker.OPERATION_NAME.equals(span.operationName())) {
+                outcomes.add((String) span.tags().get(TransactionTracker.DB_TX_OUTCOME));
+            } else if ("Update".equals(span.operationName()) && 0 == span.parentId()) {
+                updates++;
+            }
+        }
+        assertEquals("[AutoCommit, Close]", outcomes.toString());
+        assertEquals(1, updates);
+    }
+
+    @Test
+    public void testTransactionChildOfActiveSpan() throws SQLException {
+        final Connection connection = connect();
+        final Span request = tracer.buildSpan("request").start();
+        try (Scope scope = tracer.activateSpan(request)) {
+            connection.createStatement().executeUpdate("update t set x = 1");
+            connection.commit();
+        } finally {
+            request.finish();
+        }
+        connection.close();
+
+        final MockSpan transaction = finished(TransactionTracker.OPERATION_NAME);
+        assertEquals(((MockSpan) request).context().spanId(), transaction.parentId());
+        assertEquals(transaction.context().spanId(), finished("Update").parentId());
+    }
+
+    @Test
+    public void testNoTransactionWithAutoCommit() throws SQLException {
+        final Connection connection = connect();
+        jdbc.autoCommit = true;
+        connection.createStatement().executeUpdate("update t set x = 1");
+        connection.commit();
+        connection.close();
+
+        for (final MockSpan span : tracer.finishedSpans()) {
+            assertFalse(TransactionTracker.OPERATION_NAME.equals(span.operationName()));
+        }
+        assertEquals(0, finished("Update").parentId());
+        // the commit call is still timed
+        assertTrue(recorded.toString(), recorded.contains("Commit 0"));
+    }
+}